@@ -0,0 +1,89 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.configuration.KapellmeisterConfigurationProperties;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.service.KapellmeisterEngineImpl;
+import ru.mlc.kapellmeister.service.KapellmeisterOperationExecutorsService;
+import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выбор операции для выполнения и пересчет статуса группы на синтетических группах
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    @Param({"CHAIN", "WIDE", "LAYERED"})
+    private GroupShape shape;
+
+    private KapellmeisterEngine engine;
+    private UUID groupId;
+    private UUID asyncOperationId;
+
+    @Setup
+    public void setUp() {
+        KapellmeisterConfigurationProperties properties = new KapellmeisterConfigurationProperties();
+        InMemoryKapellmeisterStorageService storage = new InMemoryKapellmeisterStorageService();
+
+        OperationGroup group = SyntheticGroups.create(shape, size, 0.5);
+        storage.put(group);
+        groupId = group.getId();
+
+        OperationGroup statusGroup = SyntheticGroups.create(shape, size, 0.5);
+        Operation asyncOperation = SyntheticGroups.operation(statusGroup.getId(), OperationStatus.WAIT_RESPONSE, Instant.now());
+        asyncOperation.setType(OperationType.ASYNC_REQUEST);
+        statusGroup.getOperations().add(asyncOperation);
+        storage.put(statusGroup);
+        asyncOperationId = asyncOperation.getId();
+
+        engine = new KapellmeisterEngineImpl(true,
+                properties,
+                storage,
+                new KapellmeisterTimeSynchronizationService(properties),
+                new NoOpOperationThreadPoolExecutor(),
+                new KapellmeisterOperationExecutorsService(List.of(), true, storage, Map.of()));
+    }
+
+    @Benchmark
+    public Optional<UUID> resolveOperationForExecuting() {
+        return engine.resolveOperationForExecuting(operation -> true, groupId);
+    }
+
+    /**
+     * Пересчет статуса группы вызывается при сохранении результата асинхронной операции, пул в бенчмарке результат не применяет
+     */
+    @Benchmark
+    public void updateGroupStatus() {
+        engine.saveResult(asyncOperationId, OperationExecutionResult.SUCCESS);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+/**
+ * Форма графа зависимостей синтетической группы операций
+ */
+public enum GroupShape {
+    /**
+     * Каждая операция зависит от предыдущей
+     */
+    CHAIN,
+    /**
+     * Операции не зависят друг от друга
+     */
+    WIDE,
+    /**
+     * Слои по {@link SyntheticGroups#LAYER_WIDTH} операций, каждая операция зависит от двух операций предыдущего слоя
+     */
+    LAYERED
+}
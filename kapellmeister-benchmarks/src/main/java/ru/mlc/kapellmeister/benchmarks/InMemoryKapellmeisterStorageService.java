@@ -0,0 +1,203 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.exceptions.OperationGroupNotFoundException;
+import ru.mlc.kapellmeister.exceptions.OperationNotFoundException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище операций в памяти для замера затрат CPU без обращения к БД.
+ * Предшествующие операции хранятся в самих операциях, запись только подменяет объекты в памяти
+ */
+public class InMemoryKapellmeisterStorageService implements KapellmeisterStorageService {
+
+    private final Map<UUID, Operation> operations = new HashMap<>();
+    private final Map<UUID, OperationGroup> groups = new HashMap<>();
+
+    public void put(OperationGroup operationGroup) {
+        groups.put(operationGroup.getId(), operationGroup);
+        operationGroup.getOperations().forEach(operation -> operations.put(operation.getId(), operation));
+    }
+
+    @Override
+    public List<Operation> findAll() {
+        return new ArrayList<>(operations.values());
+    }
+
+    @Override
+    public List<Operation> findAllRequired(Set<UUID> operationIds) {
+        return operationIds.stream()
+                .map(this::getOperation)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Operation> findOperations(String executorName, UUID groupId) {
+        return getGroup(groupId).getOperations().stream()
+                .filter(operation -> operation.getExecutorName().equals(executorName))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Operation getOperation(UUID operationId) {
+        return Optional.ofNullable(operations.get(operationId))
+                .orElseThrow(() -> new OperationNotFoundException(operationId));
+    }
+
+    @Override
+    public Operation setPreviousOperation(Operation operation) {
+        return operation;
+    }
+
+    @Override
+    public OperationGroup setPreviousOperations(OperationGroup operationGroup) {
+        return operationGroup;
+    }
+
+    @Override
+    public List<Operation> findNextOperations(Operation operation) {
+        return operations.values().stream()
+                .filter(next -> next.getPrevious().stream().anyMatch(previous -> previous.getId().equals(operation.getId())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<UUID> findLaneBlockedOperationIds(Set<UUID> operationIds) {
+        return Set.of();
+    }
+
+    @Override
+    public Operation save(Operation operation) {
+        operation.setId(UUID.randomUUID());
+        operations.put(operation.getId(), operation);
+        return operation;
+    }
+
+    @Override
+    public void saveAll(List<Operation> operations) {
+        operations.forEach(operation -> this.operations.put(operation.getId(), operation));
+    }
+
+    @Override
+    public Operation loadPayload(Operation operation) {
+        return operation;
+    }
+
+    @Override
+    public boolean update(Operation operation) {
+        operations.put(operation.getId(), operation);
+        return true;
+    }
+
+    @Override
+    public boolean updateStatus(Operation operation) {
+        return update(operation);
+    }
+
+    @Override
+    public int updateAll(List<Operation> operations) {
+        operations.forEach(this::update);
+        return operations.size();
+    }
+
+    @Override
+    public Optional<OperationGroup> findGroup(UUID operationGroupId) {
+        return Optional.ofNullable(groups.get(operationGroupId));
+    }
+
+    @Override
+    public OperationGroup getGroup(UUID operationGroupId) {
+        return findGroup(operationGroupId)
+                .orElseThrow(() -> new OperationGroupNotFoundException(operationGroupId));
+    }
+
+    @Override
+    public List<OperationGroup> getAvailableGroups(Instant groupCreateStartTime) {
+        return findGroups(OperationGroupStatus.AVAILABLE_FOR_PROCESS, groupCreateStartTime);
+    }
+
+    @Override
+    public List<OperationGroup> getChangedAvailableGroups(Instant groupCreateStartTime) {
+        return getAvailableGroups(groupCreateStartTime);
+    }
+
+    @Override
+    public List<OperationGroup> getRollbackGroups(Instant groupCreateStartTime) {
+        return findGroups(OperationGroupStatus.ROLLBACK, groupCreateStartTime);
+    }
+
+    private List<OperationGroup> findGroups(Set<OperationGroupStatus> statuses, Instant groupCreateStartTime) {
+        return groups.values().stream()
+                .filter(group -> statuses.contains(group.getStatus()))
+                .filter(group -> group.getCreateTimestamp().isBefore(groupCreateStartTime))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Operation> claimReadyOperations(Instant groupCreateStartTime, Instant leaseExpiredBefore, int limit, Set<String> excludedExecutorNames) {
+        return List.of();
+    }
+
+    @Override
+    public int rejectSupersededActualStateOperations() {
+        return 0;
+    }
+
+    @Override
+    public int releaseClaims(Collection<UUID> operationIds) {
+        return operationIds.size();
+    }
+
+    @Override
+    public int renewClaims(Collection<UUID> operationIds) {
+        return operationIds.size();
+    }
+
+    @Override
+    public Set<String> getExecutorNamesWithUncompletedOperations() {
+        return operations.values().stream()
+                .filter(operation -> !operation.getStatus().isCompleted())
+                .map(Operation::getExecutorName)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<OperationGroup> getUncompleted() {
+        return groups.values().stream()
+                .filter(group -> OperationGroupStatus.UNCOMPLETED.contains(group.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public OperationGroup createGroup(UUID operationGroupId, String description, UUID parentOperationId) {
+        OperationGroup operationGroup = OperationGroup.builder()
+                .id(operationGroupId)
+                .description(description)
+                .parentOperationId(parentOperationId)
+                .status(OperationGroupStatus.CREATED)
+                .createTimestamp(Instant.now())
+                .updateTimestamp(Instant.now())
+                .build();
+        groups.put(operationGroupId, operationGroup);
+        return operationGroup;
+    }
+
+    @Override
+    public boolean update(OperationGroup operationGroup) {
+        groups.put(operationGroup.getId(), operationGroup);
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ResultSet по строкам в памяти (ключ - имя колонки), поддерживает чтение по имени и по номеру колонки.
+ * Номера колонок соответствуют порядку ключей первой строки, все строки должны содержать одинаковый набор колонок
+ */
+public final class InMemoryResultSet implements InvocationHandler {
+
+    private final List<Map<String, Object>> rows;
+    private final List<String> columnLabels;
+    private int rowIndex = -1;
+    private Object lastValue;
+
+    private InMemoryResultSet(List<Map<String, Object>> rows) {
+        this.rows = rows;
+        this.columnLabels = rows.isEmpty() ? List.of() : new ArrayList<>(rows.get(0).keySet());
+    }
+
+    public static ResultSet of(List<Map<String, Object>> rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                new InMemoryResultSet(rows));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        return switch (method.getName()) {
+            case "next" -> ++rowIndex < rows.size();
+            case "wasNull" -> lastValue == null;
+            case "close" -> null;
+            case "findColumn" -> findColumn((String) args[0]);
+            case "getObject" -> args.length == 2 ? ((Class<?>) args[1]).cast(value(args[0])) : value(args[0]);
+            case "getString" -> value(args[0]) == null ? null : lastValue.toString();
+            case "getTimestamp" -> (Timestamp) value(args[0]);
+            case "getInt" -> value(args[0]) == null ? 0 : ((Number) lastValue).intValue();
+            case "getLong" -> value(args[0]) == null ? 0L : ((Number) lastValue).longValue();
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+        int index = columnLabels.indexOf(columnLabel);
+        if (index < 0) {
+            throw new SQLException("Колонка " + columnLabel + " не найдена");
+        }
+        return index + 1;
+    }
+
+    private Object value(Object column) {
+        String columnLabel = column instanceof Integer columnIndex ? columnLabels.get(columnIndex - 1) : (String) column;
+        lastValue = rows.get(rowIndex).get(columnLabel);
+        return lastValue;
+    }
+}
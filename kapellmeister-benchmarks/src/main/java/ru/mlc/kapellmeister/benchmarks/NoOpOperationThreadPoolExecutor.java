@@ -0,0 +1,85 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Пул, который ничего не выполняет: в бенчмарках замеряется только выбор операций движком
+ */
+public class NoOpOperationThreadPoolExecutor implements KapellmeisterOperationThreadPoolExecutor {
+
+    @Override
+    @Deprecated
+    public boolean submitOperation(UUID operationId) {
+        return true;
+    }
+
+    @Override
+    public boolean submitOperation(Operation operation) {
+        return true;
+    }
+
+    @Override
+    public boolean submitClaimedOperation(Operation operation) {
+        return true;
+    }
+
+    @Override
+    public boolean submitClaimedBatch(List<Operation> operations) {
+        return true;
+    }
+
+    @Override
+    public int getAvailableCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return 0;
+    }
+
+    @Override
+    public Set<String> getSaturatedExecutorNames() {
+        return Set.of();
+    }
+
+    @Override
+    public Set<UUID> getOperationIdsInExecution() {
+        return Set.of();
+    }
+
+    @Override
+    public void waitExecution() {
+    }
+
+    @Override
+    public boolean waitExecution(Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public boolean waitExecution(Collection<UUID> operationIds, Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public void processOperation(UUID operationId) {
+    }
+
+    @Override
+    public void saveResult(UUID operationId, OperationExecutionResult executionResult) {
+    }
+}
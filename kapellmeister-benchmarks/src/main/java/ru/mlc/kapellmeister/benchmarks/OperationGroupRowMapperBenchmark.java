@@ -0,0 +1,106 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.db.mapper.OperationGroupRowMapper;
+import ru.mlc.kapellmeister.db.mapper.OperationRowMapper;
+import ru.mlc.kapellmeister.db.tables.OperationGroupTable;
+import ru.mlc.kapellmeister.db.tables.OperationTable;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор результата запроса групп с операциями (строка на каждую операцию группы)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationGroupRowMapperBenchmark {
+
+    private static final int OPERATIONS_IN_GROUP = 100;
+    private static final String GROUP_PREFIX = "grp_";
+    private static final String OPERATION_PREFIX = "operation_";
+
+    @Param({"1000", "10000", "100000"})
+    private int rowsCount;
+
+    private final OperationTable operationTable = new OperationTable();
+    private final OperationGroupTable operationGroupTable = new OperationGroupTable();
+    private OperationGroupRowMapper mapper;
+    private List<Map<String, Object>> rows;
+
+    @Setup
+    public void setUp() {
+        mapper = new OperationGroupRowMapper(new OperationRowMapper(operationTable), true);
+        rows = new ArrayList<>(rowsCount);
+        while (rows.size() < rowsCount) {
+            OperationGroup group = SyntheticGroups.create(GroupShape.WIDE, Math.min(OPERATIONS_IN_GROUP, rowsCount - rows.size()), 0.5);
+            group.getOperations().forEach(operation -> rows.add(toRow(group, operation)));
+        }
+    }
+
+    @Benchmark
+    public List<OperationGroup> extractData() throws SQLException {
+        return mapper.extractData(InMemoryResultSet.of(rows));
+    }
+
+    private Map<String, Object> toRow(OperationGroup group, Operation operation) {
+        Map<String, Object> row = new HashMap<>();
+        row.put(GROUP_PREFIX + operationGroupTable.getId().name(), group.getId());
+        row.put(GROUP_PREFIX + operationGroupTable.getStatus().name(), group.getStatus().name());
+        row.put(GROUP_PREFIX + operationGroupTable.getDescription().name(), group.getDescription());
+        row.put(GROUP_PREFIX + operationGroupTable.getCreateTimestamp().name(), toTimestamp(group.getCreateTimestamp()));
+        row.put(GROUP_PREFIX + operationGroupTable.getUpdateTimestamp().name(), toTimestamp(group.getUpdateTimestamp()));
+        row.put(GROUP_PREFIX + operationGroupTable.getComment().name(), group.getComment());
+        row.put(GROUP_PREFIX + operationGroupTable.getParentOperationId().name(), group.getParentOperationId());
+
+        row.put(OPERATION_PREFIX + operationTable.getId().name(), operation.getId());
+        row.put(OPERATION_PREFIX + operationTable.getGroupId().name(), operation.getGroupId());
+        row.put(OPERATION_PREFIX + operationTable.getExecutorName().name(), operation.getExecutorName());
+        row.put(OPERATION_PREFIX + operationTable.getType().name(), operation.getType().name());
+        row.put(OPERATION_PREFIX + operationTable.getParams().name(), operation.getParams());
+        row.put(OPERATION_PREFIX + operationTable.getDescription().name(), operation.getDescription());
+        row.put(OPERATION_PREFIX + operationTable.getRelatedEntityId().name(), operation.getRelatedEntityId());
+        row.put(OPERATION_PREFIX + operationTable.getRollbackType().name(), operation.getRollbackType().name());
+        row.put(OPERATION_PREFIX + operationTable.getImportanceType().name(), operation.getImportanceType().name());
+        row.put(OPERATION_PREFIX + operationTable.getPriority().name(), operation.getPriority());
+        row.put(OPERATION_PREFIX + operationTable.getAttemptCount().name(), operation.getAttemptCount());
+        row.put(OPERATION_PREFIX + operationTable.getMaxAttemptCount().name(), operation.getMaxAttemptCount());
+        row.put(OPERATION_PREFIX + operationTable.getRetryDelay().name(), operation.getRetryDelay());
+        row.put(OPERATION_PREFIX + operationTable.getWaitResponseTimeout().name(), operation.getWaitResponseTimeout());
+        row.put(OPERATION_PREFIX + operationTable.getCreateTimestamp().name(), toTimestamp(operation.getCreateTimestamp()));
+        row.put(OPERATION_PREFIX + operationTable.getUpdateTimestamp().name(), toTimestamp(operation.getUpdateTimestamp()));
+        row.put(OPERATION_PREFIX + operationTable.getDeadlineTimestamp().name(), toTimestamp(operation.getDeadlineTimestamp()));
+        row.put(OPERATION_PREFIX + operationTable.getLastExecutionTimeStamp().name(), toTimestamp(operation.getLastExecutionTimeStamp()));
+        row.put(OPERATION_PREFIX + operationTable.getStatus().name(), operation.getStatus().name());
+        row.put(OPERATION_PREFIX + operationTable.getExecutionResult().name(), null);
+        row.put(OPERATION_PREFIX + operationTable.getComment().name(), operation.getComment());
+        row.put(OPERATION_PREFIX + operationTable.getVersion().name(), operation.getVersion());
+        return row;
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.service.OperationValidator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная проверка порядка операций группы на глубоких и широких графах.
+ * Все операции критичные, чтобы проверялись и циклы, и предшествующие критичным операции
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationValidatorBenchmark {
+
+    @Param({"100", "1000"})
+    private int size;
+
+    @Param({"CHAIN", "WIDE", "LAYERED"})
+    private GroupShape shape;
+
+    private OperationValidator validator;
+    private OperationGroup group;
+
+    @Setup
+    public void setUp() {
+        group = SyntheticGroups.create(shape, size, 0);
+        group.getOperations().forEach(operation -> operation.setImportanceType(OperationImportanceType.CRITICAL));
+        InMemoryKapellmeisterStorageService storage = new InMemoryKapellmeisterStorageService();
+        storage.put(group);
+        validator = new OperationValidator(storage);
+    }
+
+    @Benchmark
+    public OperationGroup validateOrder() {
+        validator.validateOrder(group);
+        return group;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mlc.kapellmeister.db.query.QueryBuilder;
+import ru.mlc.kapellmeister.db.tables.OperationGroupTable;
+import ru.mlc.kapellmeister.db.tables.OperationTable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение SQL через QueryBuilder в том виде, как это делают репозитории на каждый вызов
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+    private static final String GROUP_ALIAS = "grp";
+    private static final String OPERATION_ALIAS = "operation";
+
+    private final OperationTable operationTable = new OperationTable();
+    private final OperationGroupTable operationGroupTable = new OperationGroupTable();
+
+    @Benchmark
+    public String selectGroupsWithOperations() {
+        return new QueryBuilder()
+                .select(operationGroupTable.allColumnsNameWithAlias(GROUP_ALIAS) + "," + operationTable.allColumnsNameWithAlias(OPERATION_ALIAS))
+                .from(GROUP_ALIAS, operationGroupTable.getTableName())
+                .leftJoin(OPERATION_ALIAS, operationTable.getTableName(), operationTable.getGroupId(),
+                        GROUP_ALIAS, operationGroupTable.getId())
+                .where()
+                .whereParam(GROUP_ALIAS, operationGroupTable.getStatus(), "<>")
+                .and()
+                .whereParam(GROUP_ALIAS, operationGroupTable.getCreateTimestamp(), "<")
+                .getQuery();
+    }
+
+    @Benchmark
+    public String updateOperation() {
+        return new QueryBuilder()
+                .update(operationTable.getTableName())
+                .paramsForUpdate(operationTable.getStatus(), operationTable.getAttemptCount(),
+                        operationTable.getUpdateTimestamp(), operationTable.getVersion())
+                .where()
+                .whereParam(operationTable.getId(), "=")
+                .and()
+                .whereParam(operationTable.getVersion(), "=")
+                .getQuery();
+    }
+
+    @Benchmark
+    public String selectAllColumns() {
+        return operationTable.allColumnsName();
+    }
+}
@@ -0,0 +1,81 @@
+package ru.mlc.kapellmeister.benchmarks;
+
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.constants.RollbackType;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Генерация синтетических групп операций с воспроизводимой структурой
+ */
+public final class SyntheticGroups {
+
+    public static final int LAYER_WIDTH = 50;
+    public static final String EXECUTOR_NAME = "benchmark-executor";
+
+    private SyntheticGroups() {
+    }
+
+    /**
+     * @param shape          форма графа зависимостей
+     * @param size           количество операций
+     * @param completedShare доля выполненных операций в начале группы (от 0 до 1)
+     */
+    public static OperationGroup create(GroupShape shape, int size, double completedShare) {
+        Random random = new Random(size);
+        Instant now = Instant.now();
+        UUID groupId = UUID.randomUUID();
+        int completedCount = (int) (size * completedShare);
+        List<Operation> operations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Operation operation = operation(groupId, i < completedCount ? OperationStatus.SUCCESS : OperationStatus.CREATED, now);
+            operation.setPriority(random.nextInt(11));
+            if (shape == GroupShape.CHAIN && i > 0) {
+                operation.addPrevious(operations.get(i - 1));
+            } else if (shape == GroupShape.LAYERED && i >= LAYER_WIDTH) {
+                int previousLayerStart = (i / LAYER_WIDTH - 1) * LAYER_WIDTH;
+                operation.addPrevious(operations.get(previousLayerStart + random.nextInt(LAYER_WIDTH)));
+                operation.addPrevious(operations.get(previousLayerStart + random.nextInt(LAYER_WIDTH)));
+            }
+            operations.add(operation);
+        }
+        return OperationGroup.builder()
+                .id(groupId)
+                .status(completedCount > 0 ? OperationGroupStatus.IN_PROGRESS : OperationGroupStatus.CREATED)
+                .operations(operations)
+                .createTimestamp(now.minusSeconds(60))
+                .updateTimestamp(now.minusSeconds(60))
+                .build();
+    }
+
+    public static Operation operation(UUID groupId, OperationStatus status, Instant now) {
+        return Operation.builder()
+                .id(UUID.randomUUID())
+                .groupId(groupId)
+                .executorName(EXECUTOR_NAME)
+                .type(OperationType.SYNC_REQUEST)
+                .rollbackType(RollbackType.UNSUPPORTED)
+                .importanceType(OperationImportanceType.REQUIRED)
+                .priority(5)
+                .attemptCount(status == OperationStatus.CREATED ? 0 : 1)
+                .maxAttemptCount(3)
+                .retryDelay(1000L)
+                .params("{\"entityId\":\"" + UUID.randomUUID() + "\"}")
+                .description("benchmark operation")
+                .createTimestamp(now.minusSeconds(60))
+                .updateTimestamp(now.minusSeconds(30))
+                .lastExecutionTimeStamp(status == OperationStatus.CREATED ? null : now.minusSeconds(30))
+                .status(status)
+                .version(0)
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package ru.mlc.kapellmeister.api;
+
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Экзекутор, способный выполнить пачку операций одним вызовом (например, отправить все сообщения одним flush продюсера).
+ * Пачки формируются из захваченных операций экзекутора (kapellmeister.claim-enabled=true),
+ * размер пачки и время ее накопления задаются параметрами kapellmeister.batch-max-size и kapellmeister.batch-linger-time
+ */
+public interface BatchOperationExecutor<T> extends OperationExecutor<T> {
+
+    /**
+     * Бизнес-логика для пачки операций.
+     * Для каждой операции должно возвращаться семантически правильное значение {@link OperationExecutionResult}.
+     * Добавлять операции в очередь (вложенные группы) при выполнении пачки нельзя, такой вызов завершится ошибкой
+     *
+     * @param params параметры операций пачки
+     * @return результаты выполнения по индексу параметров в пачке, операции без результата считаются проваленной попыткой
+     */
+    Map<Integer, OperationExecutionResult> executeBatch(List<T> params);
+
+    /**
+     * Выполнение одной операции (вне пачки) - пачка из одной операции
+     */
+    @Override
+    default OperationExecutionResult execute(T param) {
+        return executeBatch(List.of(param)).getOrDefault(0, OperationExecutionResult.ATTEMPT_FAILED);
+    }
+}
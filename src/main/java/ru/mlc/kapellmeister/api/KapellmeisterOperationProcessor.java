@@ -2,6 +2,7 @@ package ru.mlc.kapellmeister.api;
 
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface KapellmeisterOperationProcessor {
@@ -13,6 +14,13 @@ public interface KapellmeisterOperationProcessor {
      */
     OperationExecutionResult processOperation(UUID operationId);
 
+    /**
+     * Выполнить захваченные операции в одной транзакции, операции {@link BatchOperationExecutor} выполняются пачкой
+     *
+     * @param operationIds идентификаторы захваченных операций
+     */
+    void processOperations(List<UUID> operationIds);
+
     /**
      * Сохранение результата выполнения асинхронной операции
      *
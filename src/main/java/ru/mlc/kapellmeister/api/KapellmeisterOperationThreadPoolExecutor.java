@@ -1,20 +1,96 @@
 package ru.mlc.kapellmeister.api;
 
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.db.Operation;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface KapellmeisterOperationThreadPoolExecutor {
 
     /**
-     * Добавить в пул потоков одну операцию в выполнение
+     * Добавить в пул потоков одну операцию в выполнение.
+     * Для проверки лимита экзекутора и приоритета операция дополнительно читается из БД
      *
      * @param operationId идентификатор операции
+     * @return true если операция передана на выполнение, false если пул или лимит экзекутора операции переполнен
+     * @deprecated используйте {@link #submitOperation(Operation)} с уже загруженной операцией
+     */
+    @Deprecated
+    boolean submitOperation(UUID operationId);
+
+    /**
+     * Добавить в пул потоков одну операцию в выполнение
+     *
+     * @param operation операция
+     * @return true если операция передана на выполнение, false если пул или лимит экзекутора операции переполнен
+     */
+    boolean submitOperation(Operation operation);
+
+    /**
+     * Добавить в пул потоков операцию, уже захваченную для выполнения (переведенную в работу)
+     *
+     * @param operation захваченная операция
+     * @return true если операция передана на выполнение, false если пул или лимит экзекутора переполнен и захват операции снят
+     */
+    boolean submitClaimedOperation(Operation operation);
+
+    /**
+     * Добавить в пул потоков пачку захваченных операций одного экзекутора, пачка выполняется одной задачей пула
+     *
+     * @param operations захваченные операции одного экзекутора
+     * @return true если пачка передана на выполнение, false если пул или лимит экзекутора переполнен и захват операций снят
+     */
+    boolean submitClaimedBatch(List<Operation> operations);
+
+    /**
+     * Количество операций, которые можно передать в пул без отказа (свободные потоки и места в очереди)
+     */
+    int getAvailableCapacity();
+
+    /**
+     * Количество операций, ожидающих свободного потока в очереди пула
      */
-    void submitOperation(UUID operationId);
+    int getQueuedCount();
 
+    /**
+     * Количество операций, выполняющихся в данный момент
+     */
+    int getActiveCount();
+
+    /**
+     * Имена экзекуторов, достигших своего лимита одновременно выполняемых операций
+     */
+    Set<String> getSaturatedExecutorNames();
+
+    /**
+     * Идентификаторы операций, переданных в пул и еще не завершенных (включая операции в очереди пула)
+     */
+    Set<UUID> getOperationIdsInExecution();
+
+    /**
+     * Ожидает (без активного ожидания) завершения всех переданных в пул операций, включая операции в очереди пула
+     */
     void waitExecution();
 
+    /**
+     * Ожидает завершения всех переданных в пул операций, но не дольше timeout
+     *
+     * @return true если все операции завершены, false если время ожидания истекло
+     */
+    boolean waitExecution(Duration timeout);
+
+    /**
+     * Ожидает завершения переданных операций, но не дольше timeout
+     *
+     * @param operationIds идентификаторы операций, уже переданных в пул
+     * @return true если все операции завершены, false если время ожидания истекло
+     */
+    boolean waitExecution(Collection<UUID> operationIds, Duration timeout);
+
     /**
      * Синхронно выполнить одну операцию
      *
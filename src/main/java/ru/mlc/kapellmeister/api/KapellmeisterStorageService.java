@@ -22,23 +22,109 @@ public interface KapellmeisterStorageService {
 
     Operation setPreviousOperation(Operation operation);
 
+    /**
+     * Заполняет предшествующие операции для всех операций группы одним запросом.
+     * Предшествующие операции из той же группы подставляются теми же экземплярами, что и в группе
+     */
+    OperationGroup setPreviousOperations(OperationGroup operationGroup);
+
     List<Operation> findNextOperations(Operation operation);
 
+    /**
+     * Определяет операции, для которых есть более ранняя (в любой группе, доступной для выполнения) незавершенная операция
+     * того же экзекутора по той же сущности (relatedEntityId).
+     * Используется для строгого порядка выполнения {@link ru.mlc.kapellmeister.constants.OperationType#PUBLISH_DIFF_LOG}
+     *
+     * @param operationIds идентификаторы проверяемых операций
+     * @return идентификаторы операций, заблокированных более ранними операциями
+     */
+    Set<UUID> findLaneBlockedOperationIds(Set<UUID> operationIds);
+
     Operation save(Operation operation);
 
+    /**
+     * Сохраняет операции пакетной вставкой, идентификаторы операций должны быть заполнены заранее
+     */
+    void saveAll(List<Operation> operations);
+
+    /**
+     * Догружает params, description и comment операции, загруженной в составе группы
+     * при включенном {@code kapellmeister.compact-group-scan-enabled}
+     */
+    Operation loadPayload(Operation operation);
+
     boolean update(Operation operation);
 
+    /**
+     * Обновляет только статус операции с проверкой версии
+     *
+     * @return true, если операция не была изменена конкурентно
+     */
+    boolean updateStatus(Operation operation);
+
+    /**
+     * Обновляет операции одним пакетным запросом
+     *
+     * @return количество обновленных операций
+     */
+    int updateAll(List<Operation> operations);
+
     Optional<OperationGroup> findGroup(UUID operationGroupId);
 
     OperationGroup getGroup(UUID operationGroupId);
 
     List<OperationGroup> getAvailableGroups(Instant groupCreateStartTime);
 
+    /**
+     * Доступные для выполнения группы, операции которых изменялись после последнего обновления группы
+     */
+    List<OperationGroup> getChangedAvailableGroups(Instant groupCreateStartTime);
+
+    List<OperationGroup> getRollbackGroups(Instant groupCreateStartTime);
+
+    /**
+     * Захватывает (в отдельной транзакции) готовые к выполнению операции и переводит их в работу
+     *
+     * @param groupCreateStartTime операции из групп, созданных позже этого момента, не захватываются
+     * @param leaseExpiredBefore   операции в работе, не обновлявшиеся с этого момента, захватываются повторно
+     * @param limit                максимальное количество захватываемых операций
+     * @param excludedExecutorNames экзекуторы, операции которых не захватываются (достигнут лимит одновременного выполнения)
+     * @return захваченные операции
+     */
+    List<Operation> claimReadyOperations(Instant groupCreateStartTime, Instant leaseExpiredBefore, int limit, Set<String> excludedExecutorNames);
+
+    /**
+     * Отклоняет (в отдельной транзакции) ожидающие выполнения операции {@link ru.mlc.kapellmeister.constants.OperationType#PUBLISH_ACTUAL_STATE},
+     * утратившие актуальность из-за более новой операции того же экзекутора по той же сущности
+     *
+     * @return количество отклоненных операций
+     */
+    int rejectSupersededActualStateOperations();
+
+    /**
+     * Возвращает (в отдельной транзакции) захваченные операции в очередь, если их не удалось передать на выполнение
+     *
+     * @return количество операций, с которых снят захват
+     */
+    int releaseClaims(Collection<UUID> operationIds);
+
+    /**
+     * Продлевает (в отдельной транзакции) захват выполняющихся операций, чтобы другой узел не захватил их повторно
+     *
+     * @return количество операций, захват которых продлен
+     */
+    int renewClaims(Collection<UUID> operationIds);
+
     Set<String> getExecutorNamesWithUncompletedOperations();
 
     List<OperationGroup> getUncompleted();
 
     OperationGroup createGroup(UUID operationGroupId, String description, UUID parentOperationId);
 
-    OperationGroup update(OperationGroup operationGroup);
+    /**
+     * Обновляет группу с проверкой, что ее статус в БД не изменился после чтения
+     *
+     * @return false, если статус группы был изменен параллельно и группа не обновлена
+     */
+    boolean update(OperationGroup operationGroup);
 }
@@ -25,6 +25,17 @@ public interface OperationExecutor<T> {
      */
     String getName();
 
+    /**
+     * Максимальное количество одновременно выполняемых операций экзекутора.
+     * Позволяет изолировать медленные экзекуторы, чтобы они не занимали все потоки пула.
+     * Может быть переопределено параметром kapellmeister.executors-max-concurrency
+     *
+     * @return лимит, {@link Optional#empty()} если экзекутор ограничен только общим пулом
+     */
+    default Optional<Integer> getMaxConcurrency() {
+        return Optional.empty();
+    }
+
     /**
      * Бизнес-логика.
      * Должна возвращать семантически правильное значение {@link OperationExecutionResult} для корректного управления жизненным циклом операции
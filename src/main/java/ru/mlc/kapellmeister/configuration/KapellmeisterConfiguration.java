@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -16,6 +17,7 @@ import ru.mlc.kapellmeister.api.KapellmeisterOperationProcessor;
 import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.constants.ExecutorMode;
 import ru.mlc.kapellmeister.db.mapper.OperationGroupRowMapper;
 import ru.mlc.kapellmeister.db.mapper.OperationRowMapper;
 import ru.mlc.kapellmeister.db.repository.OperationGroupJdbcRepository;
@@ -23,7 +25,10 @@ import ru.mlc.kapellmeister.db.repository.OperationJdbcRepository;
 import ru.mlc.kapellmeister.db.tables.OperationGroupTable;
 import ru.mlc.kapellmeister.db.tables.OperationOrderBindingTable;
 import ru.mlc.kapellmeister.db.tables.OperationTable;
+import ru.mlc.kapellmeister.exceptions.KapellmeisterException;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
 import ru.mlc.kapellmeister.service.KapellmeisterAfterCommitService;
+import ru.mlc.kapellmeister.service.KapellmeisterClaimLeaseRenewalService;
 import ru.mlc.kapellmeister.service.KapellmeisterEngineImpl;
 import ru.mlc.kapellmeister.service.KapellmeisterGroupContextHolder;
 import ru.mlc.kapellmeister.service.KapellmeisterImpl;
@@ -33,14 +38,19 @@ import ru.mlc.kapellmeister.service.KapellmeisterOperationThreadPoolExecutorImpl
 import ru.mlc.kapellmeister.service.KapellmeisterPostgresJdbcStorageService;
 import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
 import ru.mlc.kapellmeister.service.OperationValidator;
+import ru.mlc.kapellmeister.service.PrioritizedOperationTask;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 @EnableConfigurationProperties(KapellmeisterConfigurationProperties.class)
+@Import(KapellmeisterMetricsConfiguration.class)
 @RequiredArgsConstructor
 public class KapellmeisterConfiguration {
 
@@ -82,7 +92,7 @@ public class KapellmeisterConfiguration {
 
     @Bean
     public OperationGroupRowMapper operationGroupRowMapper(OperationRowMapper operationRowMapper) {
-        return new OperationGroupRowMapper(operationRowMapper);
+        return new OperationGroupRowMapper(operationRowMapper, !properties.getCompactGroupScanEnabled());
     }
 
     @Bean
@@ -90,8 +100,9 @@ public class KapellmeisterConfiguration {
                                                        JdbcTemplate jdbcTemplate,
                                                        NamedParameterJdbcTemplate namedParameterJdbcTemplate,
                                                        OperationTable operationTable,
+                                                       OperationGroupTable operationGroupTable,
                                                        OperationOrderBindingTable operationOrderBindingTable) {
-        return new OperationJdbcRepository(operationRowMapper, jdbcTemplate, namedParameterJdbcTemplate, operationTable, operationOrderBindingTable);
+        return new OperationJdbcRepository(operationRowMapper, jdbcTemplate, namedParameterJdbcTemplate, operationTable, operationGroupTable, operationOrderBindingTable);
     }
 
     @Bean
@@ -103,23 +114,34 @@ public class KapellmeisterConfiguration {
         return new OperationGroupJdbcRepository(operationGroupRowMapper, jdbcTemplate, namedParameterJdbcTemplate, operationGroupTable, operationTable);
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "kapellmeister.metrics-enabled", havingValue = "false", matchIfMissing = true)
+    public KapellmeisterMetrics noopKapellmeisterMetrics() {
+        return KapellmeisterMetrics.NOOP;
+    }
+
     @Bean
     public KapellmeisterStorageService kapellmeisterStorageService(OperationJdbcRepository operationRepository,
-                                                                   OperationGroupJdbcRepository operationGroupRepository) {
-        return new KapellmeisterPostgresJdbcStorageService(operationRepository, operationGroupRepository);
+                                                                   OperationGroupJdbcRepository operationGroupRepository,
+                                                                   KapellmeisterMetrics kapellmeisterMetrics,
+                                                                   KapellmeisterTimeSynchronizationService timeService) {
+        return new KapellmeisterPostgresJdbcStorageService(operationRepository, operationGroupRepository, kapellmeisterMetrics, timeService);
     }
 
     @Bean
     public KapellmeisterOperationExecutorsService kapellmeisterOperationExecutorsService(List<OperationExecutor<?>> executors,
                                                                                          KapellmeisterStorageService kapellmeisterStorageService) {
-        return new KapellmeisterOperationExecutorsService(executors, properties.getExecutingEnabled(), kapellmeisterStorageService);
+        return new KapellmeisterOperationExecutorsService(executors, properties.getExecutingEnabled(), kapellmeisterStorageService,
+                properties.getExecutorsMaxConcurrency());
     }
 
     @Bean
     public KapellmeisterEngine kapellmeisterEngine(KapellmeisterStorageService kapellmeisterStorageService,
                                                    KapellmeisterTimeSynchronizationService timeService,
-                                                   KapellmeisterOperationThreadPoolExecutor kapellmeisterOperationThreadPoolExecutor) {
-        return new KapellmeisterEngineImpl(properties.getExecutingEnabled(), kapellmeisterStorageService, timeService, kapellmeisterOperationThreadPoolExecutor);
+                                                   KapellmeisterOperationThreadPoolExecutor kapellmeisterOperationThreadPoolExecutor,
+                                                   KapellmeisterOperationExecutorsService operationExecutorsService) {
+        return new KapellmeisterEngineImpl(properties.getExecutingEnabled(), properties, kapellmeisterStorageService, timeService,
+                kapellmeisterOperationThreadPoolExecutor, operationExecutorsService);
     }
 
     @Bean
@@ -134,6 +156,13 @@ public class KapellmeisterConfiguration {
         return new KapellmeisterAfterCommitService.Trigger(kapellmeisterEngine, timeService, properties);
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "kapellmeister.completion-trigger-enabled", havingValue = "true")
+    public KapellmeisterAfterCommitService.NextOperationsTrigger kapellmeisterNextOperationsTrigger(KapellmeisterEngine kapellmeisterEngine,
+                                                                                                    KapellmeisterTimeSynchronizationService timeService) {
+        return new KapellmeisterAfterCommitService.NextOperationsTrigger(kapellmeisterEngine, timeService, properties);
+    }
+
     @Bean
     public KapellmeisterTimeSynchronizationService timeSynchronizationService() {
         return new KapellmeisterTimeSynchronizationService(properties);
@@ -162,19 +191,69 @@ public class KapellmeisterConfiguration {
     public KapellmeisterOperationProcessor kapellmeisterThreadPoolExecutor(KapellmeisterOperationExecutorsService operationExecutorsService,
                                                                            KapellmeisterStorageService kapellmeisterStorageService,
                                                                            KapellmeisterTimeSynchronizationService timeService,
-                                                                           KapellmeisterGroupContextHolder kapellmeisterGroupContextHolder) {
+                                                                           KapellmeisterGroupContextHolder kapellmeisterGroupContextHolder,
+                                                                           KapellmeisterAfterCommitService kapellmeisterAfterCommitService,
+                                                                           KapellmeisterMetrics kapellmeisterMetrics) {
         return new KapellmeisterOperationProcessorImpl(
                 operationExecutorsService,
                 kapellmeisterStorageService,
                 timeService,
-                kapellmeisterGroupContextHolder
+                kapellmeisterGroupContextHolder,
+                kapellmeisterAfterCommitService,
+                kapellmeisterMetrics
         );
     }
 
     @Bean
     public KapellmeisterOperationThreadPoolExecutor kapellmeisterOperationThreadPoolExecutor(TransactionTemplate transactionTemplate,
                                                                                              KapellmeisterStorageService kapellmeisterStorageService,
-                                                                                             KapellmeisterOperationProcessor kapellmeisterOperationProcessor) {
+                                                                                             KapellmeisterOperationProcessor kapellmeisterOperationProcessor,
+                                                                                             KapellmeisterOperationExecutorsService operationExecutorsService,
+                                                                                             KapellmeisterMetrics kapellmeisterMetrics) {
+        KapellmeisterOperationThreadPoolExecutor pool = createOperationThreadPoolExecutor(transactionTemplate, kapellmeisterStorageService,
+                kapellmeisterOperationProcessor, operationExecutorsService);
+        kapellmeisterMetrics.bindPool(pool);
+        return pool;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kapellmeister.claim-enabled", havingValue = "true")
+    public KapellmeisterClaimLeaseRenewalService kapellmeisterClaimLeaseRenewalService(KapellmeisterOperationThreadPoolExecutor kapellmeisterOperationThreadPoolExecutor,
+                                                                                       KapellmeisterStorageService kapellmeisterStorageService) {
+        if (properties.getClaimLeaseRenewalInterval() >= properties.getClaimLeaseTimeout()) {
+            throw new KapellmeisterException("kapellmeister.claim-lease-renewal-interval должен быть меньше kapellmeister.claim-lease-timeout");
+        }
+        return new KapellmeisterClaimLeaseRenewalService(kapellmeisterOperationThreadPoolExecutor, kapellmeisterStorageService,
+                properties.getClaimLeaseRenewalInterval());
+    }
+
+    private KapellmeisterOperationThreadPoolExecutor createOperationThreadPoolExecutor(TransactionTemplate transactionTemplate,
+                                                                                       KapellmeisterStorageService kapellmeisterStorageService,
+                                                                                       KapellmeisterOperationProcessor kapellmeisterOperationProcessor,
+                                                                                       KapellmeisterOperationExecutorsService operationExecutorsService) {
+        if (properties.getExecutorMode() == ExecutorMode.VIRTUAL) {
+            return new KapellmeisterOperationThreadPoolExecutorImpl(
+                    newVirtualThreadPerTaskExecutor(),
+                    properties.getVirtualThreadsMaxConcurrency(),
+                    transactionTemplate,
+                    kapellmeisterStorageService,
+                    kapellmeisterOperationProcessor,
+                    operationExecutorsService.getExecutorsMaxConcurrency()
+            );
+        }
+        if (properties.getPriorityDispatchEnabled()) {
+            return new KapellmeisterOperationThreadPoolExecutorImpl(
+                    new ThreadPoolExecutor(properties.getThreadsCount(), properties.getThreadsCount(),
+                            0L, TimeUnit.MILLISECONDS,
+                            PrioritizedOperationTask.queue(properties.getQueueSize(), Duration.ofMillis(properties.getPriorityAgingInterval()))
+                    ),
+                    properties.getThreadsCount() + properties.getQueueSize(),
+                    transactionTemplate,
+                    kapellmeisterStorageService,
+                    kapellmeisterOperationProcessor,
+                    operationExecutorsService.getExecutorsMaxConcurrency()
+            );
+        }
         return new KapellmeisterOperationThreadPoolExecutorImpl(
                 new ThreadPoolExecutor(properties.getThreadsCount(), properties.getThreadsCount(),
                         0L, TimeUnit.MILLISECONDS,
@@ -182,7 +261,21 @@ public class KapellmeisterConfiguration {
                 ),
                 transactionTemplate,
                 kapellmeisterStorageService,
-                kapellmeisterOperationProcessor
+                kapellmeisterOperationProcessor,
+                operationExecutorsService.getExecutorsMaxConcurrency()
         );
     }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() вызывается через reflection, т.к. библиотека собирается под Java 17
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new KapellmeisterException("kapellmeister.executor-mode=virtual требует Java 21 и выше", e);
+        } catch (ReflectiveOperationException e) {
+            throw new KapellmeisterException("Не удалось создать пул виртуальных потоков", e);
+        }
+    }
 }
@@ -4,6 +4,10 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
+import ru.mlc.kapellmeister.constants.ExecutorMode;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Data
 @Validated
@@ -35,4 +39,104 @@ public class KapellmeisterConfigurationProperties {
     private Integer threadsCount = 20;
     @NotNull
     private Integer queueSize = 25;
+    /**
+     * Очередь пула потоков упорядочена по приоритету операций (затем по времени ожидания) вместо порядка добавления.
+     * Используется в режиме platform
+     */
+    @NotNull
+    private Boolean priorityDispatchEnabled = false;
+    /**
+     * Количество миллисекунд ожидания в очереди пула, повышающее приоритет операции на одну ступень (защита от голодания)
+     */
+    @NotNull
+    private Long priorityAgingInterval = 1000L;
+    /**
+     * Способ выполнения операций: platform - фиксированный пул потоков, virtual - виртуальный поток на операцию (Java 21+).
+     * Режим virtual подходит для экзекуторов, ожидающих сетевой ввод-вывод (SYNC_REQUEST, SEND_KAFKA_MESSAGE)
+     */
+    @NotNull
+    private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    /**
+     * Максимальное количество одновременно выполняемых операций в режиме virtual
+     */
+    @NotNull
+    private Integer virtualThreadsMaxConcurrency = 200;
+    /**
+     * Максимальное количество одновременно выполняемых операций по имени экзекутора.
+     * Переопределяет {@link ru.mlc.kapellmeister.api.OperationExecutor#getMaxConcurrency()}
+     */
+    @NotNull
+    private Map<String, Integer> executorsMaxConcurrency = new HashMap<>();
+
+    /**
+     * Выбор операций для выполнения одним запросом (SELECT ... FOR UPDATE SKIP LOCKED) вместо загрузки всех доступных групп
+     */
+    @NotNull
+    private Boolean claimEnabled = false;
+    /**
+     * Максимальное количество операций, захватываемых одним запросом
+     */
+    @NotNull
+    private Integer claimBatchSize = 100;
+    /**
+     * Количество миллисекунд, после которого захваченная, но не завершенная операция считается брошенной
+     * (например, узел упал во время выполнения) и может быть захвачена повторно.
+     * Захват выполняющихся на узле операций продлевается каждые claimLeaseRenewalInterval
+     */
+    @NotNull
+    private Long claimLeaseTimeout = 600000L;
+    /**
+     * Количество миллисекунд между продлениями захвата операций, переданных в пул и еще не завершенных.
+     * Должно быть меньше claimLeaseTimeout
+     */
+    @NotNull
+    private Long claimLeaseRenewalInterval = 60000L;
+    /**
+     * Количество миллисекунд между полными проверками статусов всех доступных групп при захвате операций.
+     * Между полными проверками актуализируются только группы, операции которых менялись после обновления группы,
+     * полная проверка подбирает группы, изменения которых не были обнаружены (гонка с фиксацией транзакций, расхождение часов узлов)
+     */
+    @NotNull
+    private Long claimFullGroupScanInterval = 60000L;
+    /**
+     * Перед выбором операций для выполнения отклонять ожидающие операции PUBLISH_ACTUAL_STATE,
+     * для которых создана более новая операция того же экзекутора по той же сущности (relatedEntityId)
+     */
+    @NotNull
+    private Boolean actualStateCoalescingEnabled = false;
+    /**
+     * Максимальное количество захваченных операций, передаваемых в {@link ru.mlc.kapellmeister.api.BatchOperationExecutor} одним вызовом
+     */
+    @NotNull
+    private Integer batchMaxSize = 100;
+    /**
+     * Количество миллисекунд, в течение которых неполная пачка операций ожидает новых захваченных операций перед выполнением.
+     * Ожидание ограничено итерацией планировщика: когда готовые операции закончились, неполные пачки выполняются сразу
+     */
+    @NotNull
+    private Long batchLingerTime = 20L;
+    /**
+     * Запуск следующих операций сразу после успешного завершения предшествующей операции (после коммита ее транзакции),
+     * без ожидания следующего запуска шедуллера
+     */
+    @NotNull
+    private Boolean completionTriggerEnabled = false;
+    /**
+     * Накопление создаваемых операций в контексте транзакции и сохранение их пакетной вставкой перед коммитом.
+     * Порядок операций проверяется один раз при сохранении пачки
+     */
+    @NotNull
+    private Boolean bufferedEnqueueEnabled = false;
+    /**
+     * Загружать операции групп без полезной нагрузки (params, description, comment).
+     * Сокращает объем данных при сканировании групп шедуллером, полезная нагрузка таких операций
+     * догружается через {@link ru.mlc.kapellmeister.api.KapellmeisterStorageService#loadPayload}
+     */
+    @NotNull
+    private Boolean compactGroupScanEnabled = false;
+    /**
+     * Публикация метрик выполнения операций в Micrometer (требует micrometer-core и бин MeterRegistry)
+     */
+    @NotNull
+    private Boolean metricsEnabled = false;
 }
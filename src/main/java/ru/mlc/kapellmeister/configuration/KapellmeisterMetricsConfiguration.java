@@ -0,0 +1,18 @@
+package ru.mlc.kapellmeister.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
+import ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics;
+
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(name = "kapellmeister.metrics-enabled", havingValue = "true")
+public class KapellmeisterMetricsConfiguration {
+
+    @Bean
+    public KapellmeisterMetrics micrometerKapellmeisterMetrics(MeterRegistry meterRegistry) {
+        return new MicrometerKapellmeisterMetrics(meterRegistry);
+    }
+}
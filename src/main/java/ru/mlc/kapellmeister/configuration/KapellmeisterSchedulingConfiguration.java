@@ -7,7 +7,10 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.exceptions.KapellmeisterException;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
 import ru.mlc.kapellmeister.sceduling.KapellmeisterScheduler;
+import ru.mlc.kapellmeister.sceduling.KapellmeisterSpringClusterScheduler;
 import ru.mlc.kapellmeister.sceduling.KapellmeisterSpringShedlockScheduler;
 import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
 
@@ -22,11 +25,29 @@ public class KapellmeisterSchedulingConfiguration {
     private final KapellmeisterConfigurationProperties configurationProperties;
 
     @Bean
+    @ConditionalOnProperty(name = "kapellmeister.scheduling.cluster-mode-enabled", havingValue = "false", matchIfMissing = true)
     public KapellmeisterScheduler kapellmeisterScheduler(KapellmeisterEngine kapellmeisterEngine,
-                                                         KapellmeisterTimeSynchronizationService kapellmeisterTimeSynchronizationService) {
+                                                         KapellmeisterTimeSynchronizationService kapellmeisterTimeSynchronizationService,
+                                                         KapellmeisterMetrics kapellmeisterMetrics) {
         return new KapellmeisterSpringShedlockScheduler(kapellmeisterEngine,
                 schedulingConfigurationProperties,
                 configurationProperties,
-                kapellmeisterTimeSynchronizationService);
+                kapellmeisterTimeSynchronizationService,
+                kapellmeisterMetrics);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kapellmeister.scheduling.cluster-mode-enabled", havingValue = "true")
+    public KapellmeisterScheduler kapellmeisterClusterScheduler(KapellmeisterEngine kapellmeisterEngine,
+                                                                KapellmeisterTimeSynchronizationService kapellmeisterTimeSynchronizationService,
+                                                                KapellmeisterMetrics kapellmeisterMetrics) {
+        if (!configurationProperties.getClaimEnabled()) {
+            throw new KapellmeisterException("Режим кластера требует включенного захвата операций (kapellmeister.claim-enabled=true)");
+        }
+        return new KapellmeisterSpringClusterScheduler(kapellmeisterEngine,
+                schedulingConfigurationProperties,
+                configurationProperties,
+                kapellmeisterTimeSynchronizationService,
+                kapellmeisterMetrics);
     }
 }
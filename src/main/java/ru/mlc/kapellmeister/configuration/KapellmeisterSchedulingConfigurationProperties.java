@@ -39,6 +39,12 @@ public class KapellmeisterSchedulingConfigurationProperties {
      */
     @NotNull
     private Long forcedStopWhenTimeLeft = 10000L;
+    /**
+     * Режим кластера: шедуллер запускается на всех узлах одновременно без глобальной блокировки,
+     * операции распределяются между узлами захватом строк (требует kapellmeister.claim-enabled=true)
+     */
+    @NotNull
+    private Boolean clusterModeEnabled = false;
 
     @PostConstruct
     public void validate() {
@@ -0,0 +1,17 @@
+package ru.mlc.kapellmeister.constants;
+
+/**
+ * Способ выполнения операций в пуле
+ */
+public enum ExecutorMode {
+
+    /**
+     * Фиксированный пул платформенных потоков (threadsCount) с очередью (queueSize)
+     */
+    PLATFORM,
+    /**
+     * Виртуальный поток на каждую операцию (Java 21+), количество одновременно выполняемых операций
+     * ограничивается параметром virtualThreadsMaxConcurrency
+     */
+    VIRTUAL
+}
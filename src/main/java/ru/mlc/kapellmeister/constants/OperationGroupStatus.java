@@ -41,6 +41,8 @@ public enum OperationGroupStatus {
     ERROR;
 
     public static final Set<OperationGroupStatus> AVAILABLE_FOR_PROCESS = Set.of(CREATED, IN_PROGRESS, ROLLBACK_IN_PROGRESS);
+    public static final Set<OperationGroupStatus> AVAILABLE_FOR_EXECUTION = Set.of(CREATED, IN_PROGRESS);
+    public static final Set<OperationGroupStatus> ROLLBACK = Set.of(ROLLBACK_IN_PROGRESS);
     public static final Set<OperationGroupStatus> UNCOMPLETED = exclude(Set.of(COMPLETED));
 
     public boolean isAvailableForProcess() {
@@ -52,6 +52,10 @@ public enum OperationStatus {
      * Операция с проверкой результата в процессе выполнения
      */
     VERIFICATION_IN_WORK,
+    /**
+     * Операция, ответ по которой не получен за отведенное время, в процессе обработки (попытка выполнения будет провалена)
+     */
+    WAIT_RESPONSE_IN_WORK,
     /**
      * Операция в процессе отката
      */
@@ -71,6 +75,7 @@ public enum OperationStatus {
     public static final Set<OperationStatus> IN_PROGRESS = Set.of(CAN_RETRY, CREATED, WAIT_RESPONSE, VERIFICATION);
     public static final Set<OperationStatus> WAIT_ASYNC_OPERATION = Set.of(WAIT_RESPONSE);
     public static final Set<OperationStatus> EXECUTABLE = Set.of(CAN_RETRY, CREATED);
+    public static final Set<OperationStatus> IN_WORK_STATUSES = Set.of(IN_WORK, VERIFICATION_IN_WORK, WAIT_RESPONSE_IN_WORK);
 
     public boolean isFailed() {
         return FATAL.contains(this);
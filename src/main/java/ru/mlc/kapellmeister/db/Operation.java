@@ -3,11 +3,14 @@ package ru.mlc.kapellmeister.db;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Version;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.CreationTimestamp;
@@ -23,6 +26,7 @@ import ru.mlc.kapellmeister.constants.RollbackType;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Data
@@ -91,11 +95,46 @@ public class Operation implements OperationState {
     @Version
     private Integer version;
 
+    /**
+     * Статус операции на момент чтения из БД или последнего сохранения
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    private OperationStatus persistedStatus;
+
+    /**
+     * Значения обновляемых колонок на момент чтения из БД или последнего сохранения, по ним определяются измененные колонки.
+     * Заполняются только для операций, загруженных для обновления
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Object[] persistedColumnValues;
+
     public Operation addPrevious(Operation operation) {
         getPrevious().add(operation);
         return this;
     }
 
+    /**
+     * Фиксирует текущее состояние операции как сохраненное в БД
+     *
+     * @param columnValues значения обновляемых колонок или null, если изменения колонок не отслеживаются
+     */
+    public void markPersisted(Object[] columnValues) {
+        persistedStatus = status;
+        persistedColumnValues = columnValues;
+    }
+
+    /**
+     * @return значения обновляемых колонок, сохраненные в БД, или пустой Optional, если изменения колонок не отслеживаются
+     */
+    public Optional<Object[]> getPersistedColumnValues() {
+        return Optional.ofNullable(persistedColumnValues);
+    }
+
     public void apply(RetryConfig retryConfig) {
         setPriority(retryConfig.getPriority());
         setMaxAttemptCount(retryConfig.getMaxAttemptCount());
@@ -48,4 +48,12 @@ public class OperationGroup {
 
     @Nullable
     private UUID parentOperationId;
+
+    /**
+     * Статус группы, прочитанный из БД. Группа обновляется, только если статус в БД с тех пор не изменился
+     * (например, параллельной актуализацией статуса на другом узле)
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private OperationGroupStatus persistedStatus;
 }
@@ -1,5 +1,6 @@
 package ru.mlc.kapellmeister.db.mapper;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
@@ -18,24 +19,40 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class OperationGroupRowMapper implements ResultSetExtractor<List<OperationGroup>> {
 
+    private static final String GROUP_PREFIX = "grp_";
+    private static final String OPERATION_PREFIX = "operation_";
+
     private final OperationRowMapper operationRowMapper;
+    /**
+     * Выбираются ли запросами групп колонки полезной нагрузки операций
+     */
+    @Getter
+    private final boolean operationPayloadLoaded;
 
     @Override
     public List<OperationGroup> extractData(ResultSet rs) throws SQLException, DataAccessException {
         Map<UUID, OperationGroup> groupMap = new HashMap<>();
+        int groupIdIndex = 0;
+        int operationIdIndex = 0;
+        OperationRowMapper.ColumnIndexes operationColumns = null;
 
         while (rs.next()) {
-            UUID groupId = rs.getObject("grp_id", UUID.class);
+            if (operationColumns == null) {
+                groupIdIndex = rs.findColumn(GROUP_PREFIX + "id");
+                operationIdIndex = rs.findColumn(OPERATION_PREFIX + "id");
+                operationColumns = operationRowMapper.resolveColumns(rs, OPERATION_PREFIX, operationPayloadLoaded);
+            }
+            UUID groupId = rs.getObject(groupIdIndex, UUID.class);
             OperationGroup group = groupMap.get(groupId);
 
             if (group == null) {
-                group = getOperationGroupEntityData(rs, groupId, "grp_");
+                group = getOperationGroupEntityData(rs, groupId, GROUP_PREFIX);
                 groupMap.put(groupId, group);
             }
 
-            UUID operationId = rs.getObject("operation_id", UUID.class);
+            UUID operationId = rs.getObject(operationIdIndex, UUID.class);
             if (operationId != null) {
-                Operation operation = operationRowMapper.mapRow(rs, "operation_");
+                Operation operation = operationRowMapper.mapRow(rs, operationColumns);
                 group.getOperations().add(operation);
             }
         }
@@ -44,9 +61,11 @@ public class OperationGroupRowMapper implements ResultSetExtractor<List<Operatio
     }
 
     public OperationGroup getOperationGroupEntityData(ResultSet rs, UUID groupId, String prefix) throws SQLException {
+        OperationGroupStatus status = OperationGroupStatus.valueOf(rs.getString(prefix + "status"));
         return OperationGroup.builder()
                 .id(groupId)
-                .status(OperationGroupStatus.valueOf(rs.getString(prefix + "status")))
+                .status(status)
+                .persistedStatus(status)
                 .createTimestamp(rs.getTimestamp(prefix + "create_timestamp").toInstant())
                 .updateTimestamp(rs.getTimestamp(prefix + "update_timestamp").toInstant())
                 .comment(rs.getString(prefix + "comment"))
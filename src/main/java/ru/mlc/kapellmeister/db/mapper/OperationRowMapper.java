@@ -1,6 +1,7 @@
 package ru.mlc.kapellmeister.db.mapper;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
 import ru.mlc.kapellmeister.constants.OperationImportanceType;
@@ -14,10 +15,20 @@ import ru.mlc.kapellmeister.db.tables.OperationTable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 @RequiredArgsConstructor
 public class OperationRowMapper implements RowMapper<Operation> {
 
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+    private static final RollbackType[] ROLLBACK_TYPES = RollbackType.values();
+    private static final OperationImportanceType[] IMPORTANCE_TYPES = OperationImportanceType.values();
+    private static final OperationStatus[] OPERATION_STATUSES = OperationStatus.values();
+    private static final OperationExecutionResult[] EXECUTION_RESULTS = OperationExecutionResult.values();
+
     private final OperationTable table;
 
     @Override
@@ -26,37 +37,117 @@ public class OperationRowMapper implements RowMapper<Operation> {
     }
 
     public Operation mapRow(ResultSet resultSet, String prefix) throws SQLException {
-        Timestamp deadlineTimestamp = resultSet.getTimestamp(prefix + table.getDeadlineTimestamp().name());
-        Timestamp lastExecutionTimeStamp = resultSet.getTimestamp(prefix + table.getLastExecutionTimeStamp().name());
-        String executionResult = resultSet.getString(prefix + table.getExecutionResult().name());
-        Object waitResponseTimeout = resultSet.getObject((prefix + table.getWaitResponseTimeout().name()));
+        return mapRow(resultSet, prefix, true);
+    }
+
+    /**
+     * @param withPayload false, если колонки полезной нагрузки (params, description, comment) не выбирались запросом
+     */
+    public Operation mapRow(ResultSet resultSet, String prefix, boolean withPayload) throws SQLException {
+        return mapRow(resultSet, resolveColumns(resultSet, prefix, withPayload));
+    }
+
+    /**
+     * Определяет номера колонок операции в результате запроса.
+     * Поиск колонки по имени дорогой, поэтому при чтении нескольких строк номера определяются один раз на ResultSet
+     *
+     * @param withPayload false, если колонки полезной нагрузки (params, description, comment) не выбирались запросом
+     */
+    public ColumnIndexes resolveColumns(ResultSet resultSet, String prefix, boolean withPayload) throws SQLException {
+        Column<?>[] columns = withPayload ? table.allColumns() : table.schedulingColumns();
+        int[] indexes = new int[table.getColumnsCount() + 1];
+        for (Column<?> column : columns) {
+            indexes[column.index()] = resultSet.findColumn(prefix + column.name());
+        }
+        return new ColumnIndexes(indexes);
+    }
+
+    /**
+     * Извлекает все строки результата запроса, номера колонок определяются по первой строке
+     */
+    public ResultSetExtractor<List<Operation>> extractor(String prefix) {
+        return resultSet -> {
+            List<Operation> operations = new ArrayList<>();
+            ColumnIndexes columns = null;
+            while (resultSet.next()) {
+                if (columns == null) {
+                    columns = resolveColumns(resultSet, prefix, true);
+                }
+                operations.add(mapRow(resultSet, columns));
+            }
+            return operations;
+        };
+    }
+
+    public Operation mapRow(ResultSet resultSet, ColumnIndexes columns) throws SQLException {
+        long waitResponseTimeout = resultSet.getLong(columns.of(table.getWaitResponseTimeout()));
+        boolean waitResponseTimeoutIsNull = resultSet.wasNull();
+        OperationStatus status = toEnum(OPERATION_STATUSES, resultSet.getString(columns.of(table.getStatus())));
         return Operation.builder()
-                .id(getObject(resultSet, table.getId(), prefix))
-                .groupId(getObject(resultSet, table.getGroupId(), prefix))
-                .executorName(resultSet.getString(prefix + table.getExecutorName().name()))
-                .type(OperationType.valueOf(resultSet.getString(prefix + table.getType().name())))
-                .params(resultSet.getString(prefix + table.getParams().name()))
-                .description(resultSet.getString(prefix + table.getDescription().name()))
-                .relatedEntityId(getObject(resultSet, table.getRelatedEntityId(), prefix))
-                .rollbackType(RollbackType.valueOf(resultSet.getString(prefix + table.getRollbackType().name())))
-                .importanceType(OperationImportanceType.valueOf(resultSet.getString(prefix + table.getImportanceType().name())))
-                .priority(resultSet.getInt(prefix + table.getPriority().name()))
-                .attemptCount(resultSet.getInt(prefix + table.getAttemptCount().name()))
-                .maxAttemptCount(resultSet.getInt(prefix + table.getMaxAttemptCount().name()))
-                .retryDelay(resultSet.getLong((prefix + table.getRetryDelay().name())))
-                .waitResponseTimeout(waitResponseTimeout == null ? null : resultSet.getLong((prefix + table.getWaitResponseTimeout().name())))
-                .createTimestamp(resultSet.getTimestamp(prefix + table.getCreateTimestamp().name()).toInstant())
-                .updateTimestamp(resultSet.getTimestamp(prefix + table.getUpdateTimestamp().name()).toInstant())
-                .deadlineTimestamp(deadlineTimestamp == null ? null : deadlineTimestamp.toInstant())
-                .lastExecutionTimeStamp(lastExecutionTimeStamp == null ? null : lastExecutionTimeStamp.toInstant())
-                .status(OperationStatus.valueOf(resultSet.getString(prefix + table.getStatus().name())))
-                .executionResult(executionResult == null ? null : OperationExecutionResult.valueOf(executionResult))
-                .comment(resultSet.getString(prefix + table.getComment().name()))
-                .version(resultSet.getInt(prefix + table.getVersion().name()))
+                .id(resultSet.getObject(columns.of(table.getId()), UUID.class))
+                .groupId(resultSet.getObject(columns.of(table.getGroupId()), UUID.class))
+                .executorName(resultSet.getString(columns.of(table.getExecutorName())))
+                .type(toEnum(OPERATION_TYPES, resultSet.getString(columns.of(table.getType()))))
+                .params(getString(resultSet, columns.of(table.getParams())))
+                .description(getString(resultSet, columns.of(table.getDescription())))
+                .relatedEntityId(resultSet.getObject(columns.of(table.getRelatedEntityId()), UUID.class))
+                .rollbackType(toEnum(ROLLBACK_TYPES, resultSet.getString(columns.of(table.getRollbackType()))))
+                .importanceType(toEnum(IMPORTANCE_TYPES, resultSet.getString(columns.of(table.getImportanceType()))))
+                .priority(resultSet.getInt(columns.of(table.getPriority())))
+                .attemptCount(resultSet.getInt(columns.of(table.getAttemptCount())))
+                .maxAttemptCount(resultSet.getInt(columns.of(table.getMaxAttemptCount())))
+                .retryDelay(resultSet.getLong(columns.of(table.getRetryDelay())))
+                .waitResponseTimeout(waitResponseTimeoutIsNull ? null : waitResponseTimeout)
+                .createTimestamp(toInstant(resultSet.getTimestamp(columns.of(table.getCreateTimestamp()))))
+                .updateTimestamp(toInstant(resultSet.getTimestamp(columns.of(table.getUpdateTimestamp()))))
+                .deadlineTimestamp(toInstant(resultSet.getTimestamp(columns.of(table.getDeadlineTimestamp()))))
+                .lastExecutionTimeStamp(toInstant(resultSet.getTimestamp(columns.of(table.getLastExecutionTimeStamp()))))
+                .status(status)
+                .persistedStatus(status)
+                .executionResult(toEnum(EXECUTION_RESULTS, resultSet.getString(columns.of(table.getExecutionResult()))))
+                .comment(getString(resultSet, columns.of(table.getComment())))
+                .version(resultSet.getInt(columns.of(table.getVersion())))
                 .build();
     }
 
-    private <T> T getObject(ResultSet resultSet, Column<T> column, String prefix) throws SQLException {
-        return resultSet.getObject(prefix + column.name(), column.type());
+    /**
+     * @return значение колонки или null, если колонка не выбиралась запросом
+     */
+    private static String getString(ResultSet resultSet, int index) throws SQLException {
+        return index == ColumnIndexes.ABSENT ? null : resultSet.getString(index);
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+
+    /**
+     * Аналог Enum.valueOf без обращения к словарю констант класса, перечисления небольшие
+     */
+    private static <E extends Enum<E>> E toEnum(E[] values, String name) {
+        if (name == null) {
+            return null;
+        }
+        for (E value : values) {
+            if (value.name().equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное значение " + name + " для " + values.getClass().getComponentType().getSimpleName());
+    }
+
+    /**
+     * Номера колонок операции в результате запроса, индекс массива - {@link Column#index()}
+     */
+    @RequiredArgsConstructor
+    public static final class ColumnIndexes {
+
+        static final int ABSENT = 0;
+
+        private final int[] indexes;
+
+        public int of(Column<?> column) {
+            return indexes[column.index()];
+        }
     }
 }
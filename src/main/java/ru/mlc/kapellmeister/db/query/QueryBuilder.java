@@ -30,6 +30,16 @@ public class QueryBuilder {
         return this;
     }
 
+    public QueryBuilder update(String alias, String tableName) {
+        query.append(String.format("UPDATE %s %s SET ", tableName, alias));
+        return this;
+    }
+
+    public QueryBuilder with(String alias, String subQuery) {
+        query.append(String.format("WITH %s AS (%s) ", alias, subQuery));
+        return this;
+    }
+
     public QueryBuilder paramsForUpdate(Column<?>... columns) {
         query.append(Arrays.stream(columns)
                 .map(column -> String.format("%s = ?", column.name()))
@@ -94,11 +104,46 @@ public class QueryBuilder {
         return this;
     }
 
+    public QueryBuilder whereColumns(String alias, Column<?> column, String operator, String otherAlias, Column<?> otherColumn) {
+        query.append(String.format("%s %s %s", joinAliasAndColumn(alias, column), operator, joinAliasAndColumn(otherAlias, otherColumn)));
+        return this;
+    }
+
+    public QueryBuilder exists(String subQuery) {
+        query.append(String.format("EXISTS (%s)", subQuery));
+        return this;
+    }
+
+    public QueryBuilder notExists(String subQuery) {
+        query.append(String.format("NOT EXISTS (%s)", subQuery));
+        return this;
+    }
+
     public QueryBuilder orderBy(String alias, Column<?> column) {
         query.append(String.format(" ORDER BY %s", joinAliasAndColumn(alias, column)));
         return this;
     }
 
+    public QueryBuilder thenOrderBy(String alias, Column<?> column) {
+        query.append(String.format(", %s", joinAliasAndColumn(alias, column)));
+        return this;
+    }
+
+    public QueryBuilder limitNamed(String paramName) {
+        query.append(String.format(" LIMIT :%s", paramName));
+        return this;
+    }
+
+    public QueryBuilder forUpdateSkipLocked(String alias) {
+        query.append(String.format(" FOR UPDATE OF %s SKIP LOCKED", alias));
+        return this;
+    }
+
+    public QueryBuilder returning(String fields) {
+        query.append(String.format(" RETURNING %s", fields));
+        return this;
+    }
+
     public QueryBuilder addField(String field) {
         query.append(field);
         return this;
@@ -120,7 +165,7 @@ public class QueryBuilder {
         return query.toString();
     }
 
-    private String joinAliasAndColumn(String alias, Column<?> column) {
+    public static String joinAliasAndColumn(String alias, Column<?> column) {
         if (alias == null || alias.isBlank()) {
             return column.name();
         } else {
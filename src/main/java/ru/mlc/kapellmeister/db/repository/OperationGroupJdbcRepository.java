@@ -1,6 +1,5 @@
 package ru.mlc.kapellmeister.db.repository;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -16,6 +15,7 @@ import ru.mlc.kapellmeister.db.tables.OperationTable;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,7 +24,6 @@ import java.util.UUID;
 import static ru.mlc.kapellmeister.constants.OperationGroupStatus.AVAILABLE_FOR_PROCESS;
 import static ru.mlc.kapellmeister.constants.OperationGroupStatus.UNCOMPLETED;
 
-@RequiredArgsConstructor
 public class OperationGroupJdbcRepository {
 
     private final OperationGroupRowMapper operationGroupRowMapper;
@@ -36,57 +35,101 @@ public class OperationGroupJdbcRepository {
 
     private static final String GROUP_ALIAS = "grp";
     private static final String OPERATION_ALIAS = "operation";
+    private static final String CHANGED_OPERATION_ALIAS = "changed";
+
+    /**
+     * Запросы не зависят от аргументов вызова и собираются в конструкторе
+     */
+    private final String findAllSql;
+    private final String findByIdSql;
+    private final String findByStatusesCreatedBeforeSql;
+    private final String findChangedAvailableCreatedBeforeSql;
+    private final String findUncompletedSql;
+    private final String updateSql;
+    private final String insertSql;
+
+    public OperationGroupJdbcRepository(OperationGroupRowMapper operationGroupRowMapper,
+                                        JdbcTemplate jdbcTemplate,
+                                        NamedParameterJdbcTemplate namedJdbcTemplate,
+                                        OperationGroupTable operationGroupTable,
+                                        OperationTable operationTable) {
+        this.operationGroupRowMapper = operationGroupRowMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.operationGroupTable = operationGroupTable;
+        this.operationTable = operationTable;
+        this.findAllSql = selectQueryWithOperations().getQuery();
+        this.findByIdSql = createFindByIdSql();
+        this.findByStatusesCreatedBeforeSql = createFindByStatusesCreatedBeforeSql();
+        this.findChangedAvailableCreatedBeforeSql = createFindChangedAvailableCreatedBeforeSql();
+        this.findUncompletedSql = createFindUncompletedSql();
+        this.updateSql = createUpdateSql();
+        this.insertSql = new QueryBuilder()
+                .insert(operationGroupTable.getTableName(), operationGroupTable.allColumns())
+                .getQuery();
+    }
 
     private QueryBuilder selectQueryWithOperations() {
         return new QueryBuilder()
-                .select(operationGroupTable.allColumnsNameWithAlias(GROUP_ALIAS) + "," +
-                        operationTable.allColumnsNameWithAlias(OPERATION_ALIAS))
+                .select(operationGroupTable.allColumnsNameWithAlias(GROUP_ALIAS) + "," + operationColumnsName())
                 .from(GROUP_ALIAS, operationGroupTable.getTableName())
                 .leftJoin(OPERATION_ALIAS, operationTable.getTableName(), operationTable.getGroupId(),
                         GROUP_ALIAS, operationGroupTable.getId());
     }
 
-    public List<OperationGroup> findAll() {
-        return jdbcTemplate.query(selectQueryWithOperations()
-                .getQuery(), operationGroupRowMapper);
+    private String operationColumnsName() {
+        return operationGroupRowMapper.isOperationPayloadLoaded()
+                ? operationTable.allColumnsNameWithAlias(OPERATION_ALIAS)
+                : operationTable.columnsNameWithAlias(OPERATION_ALIAS, operationTable.schedulingColumns());
     }
 
-    public Optional<OperationGroup> findById(UUID id) {
-        List<OperationGroup> operationGroupList = jdbcTemplate.query(selectQueryWithOperations()
+    private String createFindByIdSql() {
+        return selectQueryWithOperations()
                 .where()
                 .whereParam(GROUP_ALIAS, operationGroupTable.getId(), "=")
-                .getQuery(), operationGroupRowMapper, id);
-        if (operationGroupList != null && operationGroupList.size() == 1) {
-            return Optional.of(operationGroupList.get(0));
-        } else {
-            return Optional.empty();
-        }
+                .getQuery();
     }
 
-    public List<OperationGroup> findAvailableOperationGroupsCreatedBefore(Instant groupCreateStartTime) {
-        SqlParameterSource parameters = new MapSqlParameterSource(Map.of(
-                operationGroupTable.getStatus().name(), AVAILABLE_FOR_PROCESS.stream().map(Enum::name).toList(),
-                operationGroupTable.getCreateTimestamp().name(), Timestamp.from(groupCreateStartTime)));
-        return namedJdbcTemplate.query(selectQueryWithOperations()
+    private String createFindByStatusesCreatedBeforeSql() {
+        return selectQueryWithOperations()
                 .where()
                 .inNamed(GROUP_ALIAS, operationGroupTable.getStatus(), operationGroupTable.getStatus().name())
                 .and()
                 .whereNamedParam(GROUP_ALIAS, operationGroupTable.getCreateTimestamp(), "<", "create_timestamp")
                 .orderBy(GROUP_ALIAS, operationGroupTable.getUpdateTimestamp())
-                .getQuery(), parameters, operationGroupRowMapper);
+                .getQuery();
     }
 
-    public List<OperationGroup> getUncompleted() {
-        SqlParameterSource parameters = new MapSqlParameterSource(operationGroupTable.getStatus().name(), UNCOMPLETED.stream().map(Enum::name).toList());
-        return namedJdbcTemplate.query(selectQueryWithOperations()
+    private String createFindChangedAvailableCreatedBeforeSql() {
+        String changedOperationsSql = new QueryBuilder()
+                .select("1")
+                .from(CHANGED_OPERATION_ALIAS, operationTable.getTableName())
+                .where()
+                .whereColumns(CHANGED_OPERATION_ALIAS, operationTable.getGroupId(), "=", GROUP_ALIAS, operationGroupTable.getId())
+                .and()
+                .whereColumns(CHANGED_OPERATION_ALIAS, operationTable.getUpdateTimestamp(), ">=", GROUP_ALIAS, operationGroupTable.getUpdateTimestamp())
+                .getQuery();
+        return selectQueryWithOperations()
                 .where()
                 .inNamed(GROUP_ALIAS, operationGroupTable.getStatus(), operationGroupTable.getStatus().name())
+                .and()
+                .whereNamedParam(GROUP_ALIAS, operationGroupTable.getCreateTimestamp(), "<", "create_timestamp")
+                .and()
+                .exists(changedOperationsSql)
                 .orderBy(GROUP_ALIAS, operationGroupTable.getUpdateTimestamp())
-                .getQuery(), parameters, operationGroupRowMapper);
+                .getQuery();
     }
 
-    public boolean update(OperationGroup operationGroup) {
-        String updateSql = new QueryBuilder()
+    private String createFindUncompletedSql() {
+        return selectQueryWithOperations()
+                .where()
+                .inNamed(GROUP_ALIAS, operationGroupTable.getStatus(), operationGroupTable.getStatus().name())
+                .orderBy(GROUP_ALIAS, operationGroupTable.getUpdateTimestamp())
+                .getQuery();
+    }
+
+    private String createUpdateSql() {
+        return new QueryBuilder()
                 .update(operationGroupTable.getTableName())
                 .paramsForUpdate(Arrays.stream(operationGroupTable.allColumns())
                         .filter(column -> !operationGroupTable.getId().equals(column))
@@ -94,21 +137,72 @@ public class OperationGroupJdbcRepository {
                         .filter(column -> !operationGroupTable.getParentOperationId().equals(column))
                         .toArray(Column[]::new))
                 .where()
-                .whereParam(operationTable.getId(), "=")
+                .whereParam(operationGroupTable.getId(), "=")
+                .and()
+                .whereParam(operationGroupTable.getStatus(), "=")
                 .getQuery();
+    }
+
+    public List<OperationGroup> findAll() {
+        return jdbcTemplate.query(findAllSql, operationGroupRowMapper);
+    }
+
+    public Optional<OperationGroup> findById(UUID id) {
+        List<OperationGroup> operationGroupList = jdbcTemplate.query(findByIdSql, operationGroupRowMapper, id);
+        if (operationGroupList != null && operationGroupList.size() == 1) {
+            return Optional.of(operationGroupList.get(0));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    public List<OperationGroup> findAvailableOperationGroupsCreatedBefore(Instant groupCreateStartTime) {
+        return findByStatusesCreatedBefore(AVAILABLE_FOR_PROCESS, groupCreateStartTime);
+    }
+
+    public List<OperationGroup> findByStatusesCreatedBefore(Collection<OperationGroupStatus> statuses, Instant groupCreateStartTime) {
+        SqlParameterSource parameters = new MapSqlParameterSource(Map.of(
+                operationGroupTable.getStatus().name(), statuses.stream().map(Enum::name).toList(),
+                operationGroupTable.getCreateTimestamp().name(), Timestamp.from(groupCreateStartTime)));
+        return namedJdbcTemplate.query(findByStatusesCreatedBeforeSql, parameters, operationGroupRowMapper);
+    }
+
+    /**
+     * Доступные для выполнения группы, в которых операции менялись после последнего обновления самой группы
+     */
+    public List<OperationGroup> findChangedAvailableOperationGroupsCreatedBefore(Instant groupCreateStartTime) {
+        SqlParameterSource parameters = new MapSqlParameterSource(Map.of(
+                operationGroupTable.getStatus().name(), AVAILABLE_FOR_PROCESS.stream().map(Enum::name).toList(),
+                operationGroupTable.getCreateTimestamp().name(), Timestamp.from(groupCreateStartTime)));
+        return namedJdbcTemplate.query(findChangedAvailableCreatedBeforeSql, parameters, operationGroupRowMapper);
+    }
+
+    public List<OperationGroup> getUncompleted() {
+        SqlParameterSource parameters = new MapSqlParameterSource(operationGroupTable.getStatus().name(), UNCOMPLETED.stream().map(Enum::name).toList());
+        return namedJdbcTemplate.query(findUncompletedSql, parameters, operationGroupRowMapper);
+    }
+
+    /**
+     * Обновляет группу, если ее статус в БД совпадает с прочитанным ранее {@link OperationGroup#getPersistedStatus()}
+     *
+     * @return false, если статус группы был изменен параллельно
+     */
+    public boolean update(OperationGroup operationGroup) {
+        OperationGroupStatus expectedStatus = Optional.ofNullable(operationGroup.getPersistedStatus()).orElse(operationGroup.getStatus());
         int columnsUpdated = jdbcTemplate.update(updateSql,
                 operationGroup.getStatus().name(),
                 operationGroup.getDescription(),
                 Timestamp.from(Instant.now()),
                 operationGroup.getComment(),
-                operationGroup.getId());
+                operationGroup.getId(),
+                expectedStatus.name());
+        if (columnsUpdated == 1) {
+            operationGroup.setPersistedStatus(operationGroup.getStatus());
+        }
         return columnsUpdated == 1;
     }
 
     public boolean save(UUID operationGroupId, String description, UUID parentOperationId) {
-        String insertSql = new QueryBuilder()
-                .insert(operationGroupTable.getTableName(), operationGroupTable.allColumns())
-                .getQuery();
         int columns = jdbcTemplate.update(insertSql,
                 operationGroupId,
                 OperationGroupStatus.CREATED.name(),
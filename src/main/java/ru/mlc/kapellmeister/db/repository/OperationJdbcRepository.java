@@ -1,43 +1,277 @@
 package ru.mlc.kapellmeister.db.repository;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
 import ru.mlc.kapellmeister.db.Operation;
 import ru.mlc.kapellmeister.db.mapper.OperationRowMapper;
 import ru.mlc.kapellmeister.db.query.QueryBuilder;
 import ru.mlc.kapellmeister.db.tables.Column;
+import ru.mlc.kapellmeister.db.tables.OperationGroupTable;
 import ru.mlc.kapellmeister.db.tables.OperationOrderBindingTable;
 import ru.mlc.kapellmeister.db.tables.OperationTable;
 
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-@RequiredArgsConstructor
+import static ru.mlc.kapellmeister.db.query.QueryBuilder.joinAliasAndColumn;
+
+/**
+ * Тексты запросов формируются один раз при создании репозитория: так не тратится время на сборку SQL при каждом вызове,
+ * а неизменный текст запроса позволяет драйверу PostgreSQL переиспользовать подготовленные на сервере выражения
+ * (см. параметр prepareThreshold драйвера)
+ */
 public class OperationJdbcRepository {
 
+    public static final long DEFAULT_WAIT_RESPONSE_TIMEOUT = 60000L;
+
+    private static final String OPERATION_ALIAS = "o";
+    private static final String GROUP_ALIAS = "grp";
+    private static final String BINDING_ALIAS = "oob";
+    private static final String PREVIOUS_ALIAS = "prev";
+    private static final String CRITICAL_ALIAS = "crit";
+    private static final String READY_ALIAS = "ready";
+    private static final String NEWER_ALIAS = "newer";
+    private static final String SUPERSEDED_ALIAS = "superseded";
+    private static final String LANE_ALIAS = "lane";
+    private static final String LANE_GROUP_ALIAS = "lane_grp";
+    private static final String CLAIMED_FROM_STATUS_ALIAS = "claimed_from_status";
+
+    /**
+     * Операции полосы выполняются строго по очереди в порядке создания, поэтому операция полосы блокирует более поздние,
+     * пока ожидает выполнения или находится в работе
+     */
+    private static final List<String> LANE_BLOCKING_STATUSES = Stream.concat(OperationStatus.IN_PROGRESS.stream(), OperationStatus.IN_WORK_STATUSES.stream())
+            .map(Enum::name)
+            .toList();
+    /**
+     * Операция полосы блокирует более поздние, только пока ее группа может выполняться:
+     * операция из проваленной, завершенной с ошибкой или откатываемой группы уже не будет выполнена
+     */
+    private static final List<String> LANE_BLOCKING_GROUP_STATUSES = OperationGroupStatus.AVAILABLE_FOR_EXECUTION.stream().map(Enum::name).toList();
+    /**
+     * Более новая операция публикации актуального состояния вытесняет старую, только если она еще может быть
+     * или уже была успешно выполнена (отклоненные, проваленные и откаченные операции не учитываются)
+     */
+    private static final List<String> SUPERSEDING_STATUSES = Stream.of(OperationStatus.IN_PROGRESS.stream(), OperationStatus.IN_WORK_STATUSES.stream(), Stream.of(OperationStatus.SUCCESS))
+            .flatMap(Function.identity())
+            .map(Enum::name)
+            .toList();
+    private static final List<String> CLAIM_STATUSES = OperationStatus.IN_PROGRESS.stream().map(Enum::name).toList();
+    private static final List<String> CLAIM_IN_WORK_STATUSES = OperationStatus.IN_WORK_STATUSES.stream().map(Enum::name).toList();
+    private static final List<String> CLAIM_GROUP_STATUSES = OperationGroupStatus.AVAILABLE_FOR_EXECUTION.stream().map(Enum::name).toList();
+    private static final List<String> COMPLETED_STATUSES = OperationStatus.COMPLETED.stream().map(Enum::name).toList();
+    private static final List<String> PREVIOUS_COMPLETED_STATUSES = Stream.concat(OperationStatus.COMPLETED.stream(), OperationStatus.SUSPENDED.stream())
+            .map(Enum::name)
+            .toList();
+
     private final OperationRowMapper operationRowMapper;
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
 
     private final OperationTable operationTable;
+    private final OperationGroupTable operationGroupTable;
     private final OperationOrderBindingTable operationOrderBindingTable;
 
-    public List<Operation> findAll() {
-        return jdbcTemplate.query(new QueryBuilder()
+    /**
+     * Колонки, изменяемые при обновлении операции, и способ получения их значений из операции
+     */
+    private final Map<Column<?>, Function<Operation, Object>> updatableColumns;
+    /**
+     * Порядок значений в снимке обновляемых колонок {@link Operation#getPersistedColumnValues()}
+     */
+    private final List<Column<?>> updatableColumnList;
+    /**
+     * Запросы обновления по набору изменяемых колонок, на практике наборов немного (по одному на вид перехода статуса)
+     */
+    private final Map<List<Column<?>>, String> updateQueries = new ConcurrentHashMap<>();
+    private final ResultSetExtractor<List<Operation>> operationsExtractor;
+    private final ResultSetExtractor<List<ClaimedOperation>> claimedOperationsExtractor;
+
+    private final String bindingOperationIdAlias;
+    private final String findAllSql;
+    private final String findAllByIdsSql;
+    private final String findAllExecutorNamesSql;
+    private final String findByIdSql;
+    private final String loadPayloadSql;
+    private final String findByExecutorNameAndGroupIdSql;
+    private final String findPreviousSql;
+    private final String findPreviousByGroupIdSql;
+    private final String findNextSql;
+    private final String claimReadyOperationsSql;
+    private final String claimReadyOperationsExcludingExecutorsSql;
+    private final String findLaneBlockedSql;
+    private final String rejectSupersededActualStateOperationsSql;
+    private final String releaseClaimSql;
+    private final String renewClaimSql;
+    private final String updateStatusSql;
+    private final String insertSql;
+    private final String insertBindingSql;
+
+    public OperationJdbcRepository(OperationRowMapper operationRowMapper,
+                                   JdbcTemplate jdbcTemplate,
+                                   NamedParameterJdbcTemplate namedJdbcTemplate,
+                                   OperationTable operationTable,
+                                   OperationGroupTable operationGroupTable,
+                                   OperationOrderBindingTable operationOrderBindingTable) {
+        this.operationRowMapper = operationRowMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.operationTable = operationTable;
+        this.operationGroupTable = operationGroupTable;
+        this.operationOrderBindingTable = operationOrderBindingTable;
+        this.updatableColumns = createUpdatableColumns(operationTable);
+        this.updatableColumnList = List.copyOf(updatableColumns.keySet());
+        this.operationsExtractor = operationRowMapper.extractor("");
+        this.claimedOperationsExtractor = claimedOperationsExtractor(operationRowMapper);
+        this.bindingOperationIdAlias = BINDING_ALIAS + "_" + operationOrderBindingTable.getOperationId().name();
+        this.findAllSql = new QueryBuilder()
+                .select(operationTable.allColumnsName())
+                .from(operationTable.getTableName())
+                .getQuery();
+        this.findAllByIdsSql = new QueryBuilder()
                 .select(operationTable.allColumnsName())
                 .from(operationTable.getTableName())
-                .getQuery(), operationRowMapper);
+                .where()
+                .inNamed(operationTable.getId(), operationTable.getId().name())
+                .getQuery();
+        this.findAllExecutorNamesSql = new QueryBuilder()
+                .selectDistinct(operationTable.getStatus().name())
+                .from(operationTable.getTableName())
+                .where()
+                .inNamed(operationTable.getStatus(), operationTable.getStatus().name())
+                .getQuery();
+        this.findByIdSql = new QueryBuilder()
+                .select(operationTable.allColumnsName())
+                .from(operationTable.getTableName())
+                .where()
+                .whereParam(operationTable.getId(), "=")
+                .getQuery();
+        this.loadPayloadSql = new QueryBuilder()
+                .select(operationTable.columnsNameWithAlias("", operationTable.payloadColumns()))
+                .from(operationTable.getTableName())
+                .where()
+                .whereParam(operationTable.getId(), "=")
+                .getQuery();
+        this.findByExecutorNameAndGroupIdSql = new QueryBuilder()
+                .select(operationTable.allColumnsName())
+                .from(operationTable.getTableName())
+                .where()
+                .whereParam(operationTable.getExecutorName(), "=")
+                .and()
+                .whereParam(operationTable.getGroupId(), "=")
+                .getQuery();
+        this.findPreviousSql = new QueryBuilder()
+                .select(operationTable.allColumnsName())
+                .from("o", operationTable.getTableName())
+                .leftJoin("oob", operationOrderBindingTable.getTableName(),
+                        operationOrderBindingTable.getPreviousOperationId(),
+                        "o", operationTable.getId())
+                .where()
+                .whereParam("oob", operationOrderBindingTable.getOperationId(), "=")
+                .getQuery();
+        this.findPreviousByGroupIdSql = new QueryBuilder()
+                .select(joinAliasAndColumn(BINDING_ALIAS, operationOrderBindingTable.getOperationId()) + " AS " + bindingOperationIdAlias + "," +
+                        operationTable.allColumnsNameWithAlias(PREVIOUS_ALIAS))
+                .from(BINDING_ALIAS, operationOrderBindingTable.getTableName())
+                .leftJoin(OPERATION_ALIAS, operationTable.getTableName(), operationTable.getId(),
+                        BINDING_ALIAS, operationOrderBindingTable.getOperationId())
+                .leftJoin(PREVIOUS_ALIAS, operationTable.getTableName(), operationTable.getId(),
+                        BINDING_ALIAS, operationOrderBindingTable.getPreviousOperationId())
+                .where()
+                .whereParam(OPERATION_ALIAS, operationTable.getGroupId(), "=")
+                .getQuery();
+        this.findNextSql = new QueryBuilder()
+                .select(operationTable.allColumnsName())
+                .from("o", operationTable.getTableName())
+                .leftJoin("oob", operationOrderBindingTable.getTableName(),
+                        operationOrderBindingTable.getOperationId(),
+                        "o", operationTable.getId())
+                .where()
+                .whereParam("oob", operationOrderBindingTable.getPreviousOperationId(), "=")
+                .getQuery();
+        this.claimReadyOperationsSql = claimReadyOperationsQuery(false);
+        this.claimReadyOperationsExcludingExecutorsSql = claimReadyOperationsQuery(true);
+        this.findLaneBlockedSql = new QueryBuilder()
+                .select(joinAliasAndColumn(OPERATION_ALIAS, operationTable.getId()))
+                .from(OPERATION_ALIAS, operationTable.getTableName())
+                .where()
+                .inNamed(OPERATION_ALIAS, operationTable.getId(), "ids")
+                .and()
+                .exists(earlierLaneOperationSql(
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getExecutorName()),
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getRelatedEntityId()),
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getCreateTimestamp()),
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getId())))
+                .getQuery();
+        this.rejectSupersededActualStateOperationsSql = rejectSupersededActualStateOperationsQuery();
+        this.releaseClaimSql = releaseClaimQuery();
+        this.renewClaimSql = renewClaimQuery();
+        this.updateStatusSql = new QueryBuilder()
+                .update(operationTable.getTableName())
+                .paramsForUpdate(operationTable.getStatus(),
+                        operationTable.getUpdateTimestamp(),
+                        operationTable.getVersion())
+                .where()
+                .whereParam(operationTable.getId(), "=")
+                .and()
+                .whereParam(operationTable.getVersion(), "=")
+                .getQuery();
+        this.insertSql = new QueryBuilder()
+                .insert(operationTable.getTableName(), operationTable.allColumns())
+                .getQuery();
+        this.insertBindingSql = new QueryBuilder()
+                .insert(operationOrderBindingTable.getTableName(), operationOrderBindingTable.allColumns())
+                .getQuery();
+    }
+
+    private static Map<Column<?>, Function<Operation, Object>> createUpdatableColumns(OperationTable table) {
+        Map<Column<?>, Function<Operation, Object>> columns = new LinkedHashMap<>();
+        columns.put(table.getGroupId(), Operation::getGroupId);
+        columns.put(table.getExecutorName(), Operation::getExecutorName);
+        columns.put(table.getType(), operation -> toName(operation.getType()));
+        columns.put(table.getParams(), Operation::getParams);
+        columns.put(table.getDescription(), Operation::getDescription);
+        columns.put(table.getRelatedEntityId(), Operation::getRelatedEntityId);
+        columns.put(table.getRollbackType(), operation -> toName(operation.getRollbackType()));
+        columns.put(table.getImportanceType(), operation -> toName(operation.getImportanceType()));
+        columns.put(table.getPriority(), Operation::getPriority);
+        columns.put(table.getAttemptCount(), Operation::getAttemptCount);
+        columns.put(table.getMaxAttemptCount(), Operation::getMaxAttemptCount);
+        columns.put(table.getRetryDelay(), Operation::getRetryDelay);
+        columns.put(table.getWaitResponseTimeout(), Operation::getWaitResponseTimeout);
+        columns.put(table.getDeadlineTimestamp(), operation -> toTimestamp(operation.getDeadlineTimestamp()));
+        columns.put(table.getLastExecutionTimeStamp(), operation -> toTimestamp(operation.getLastExecutionTimeStamp()));
+        columns.put(table.getStatus(), operation -> toName(operation.getStatus()));
+        columns.put(table.getExecutionResult(), operation -> toName(operation.getExecutionResult()));
+        columns.put(table.getComment(), Operation::getComment);
+        return Collections.unmodifiableMap(columns);
+    }
+
+    public List<Operation> findAll() {
+        return jdbcTemplate.query(findAllSql, operationsExtractor);
     }
 
     public List<Operation> findAllByIds(Set<UUID> operationIds) {
@@ -45,43 +279,41 @@ public class OperationJdbcRepository {
             return Collections.emptyList();
         }
         SqlParameterSource parameters = new MapSqlParameterSource(operationTable.getId().name(), operationIds);
-        return namedJdbcTemplate.query(new QueryBuilder()
-                .select(operationTable.allColumnsName())
-                .from(operationTable.getTableName())
-                .where()
-                .inNamed(operationTable.getId(), operationTable.getId().name())
-                .getQuery(), parameters, operationRowMapper);
+        List<Operation> operations = namedJdbcTemplate.query(findAllByIdsSql, parameters, operationsExtractor);
+        operations.forEach(this::trackChanges);
+        return operations;
     }
 
     public Set<String> findAllExecutorNames(Set<String> statuses) {
         SqlParameterSource parameters = new MapSqlParameterSource(operationTable.getStatus().name(), statuses);
-        return new HashSet<>(namedJdbcTemplate.queryForList(new QueryBuilder()
-                .selectDistinct(operationTable.getStatus().name())
-                .from(operationTable.getTableName())
-                .where()
-                .inNamed(operationTable.getStatus(), operationTable.getStatus().name())
-                .getQuery(), parameters, String.class));
+        return new HashSet<>(namedJdbcTemplate.queryForList(findAllExecutorNamesSql, parameters, String.class));
     }
 
     public Optional<Operation> findById(UUID id) {
-        return Optional.ofNullable(jdbcTemplate.queryForObject(new QueryBuilder()
-                .select(operationTable.allColumnsName())
-                .from(operationTable.getTableName())
-                .where()
-                .whereParam(operationTable.getId(), "=")
-                .getQuery(), operationRowMapper, id));
+        return Optional.ofNullable(jdbcTemplate.queryForObject(findByIdSql, operationRowMapper, id))
+                .map(this::trackChanges);
+    }
+
+    /**
+     * Догружает полезную нагрузку (params, description, comment) операции, загруженной без нее
+     */
+    public Operation loadPayload(Operation operation) {
+        return jdbcTemplate.queryForObject(loadPayloadSql, (resultSet, rowNum) -> {
+            operation.setParams(resultSet.getString(operationTable.getParams().name()));
+            operation.setDescription(resultSet.getString(operationTable.getDescription().name()));
+            operation.setComment(resultSet.getString(operationTable.getComment().name()));
+            operation.getPersistedColumnValues().ifPresent(persisted -> {
+                for (Column<?> payloadColumn : operationTable.payloadColumns()) {
+                    int index = updatableColumnList.indexOf(payloadColumn);
+                    persisted[index] = updatableColumns.get(payloadColumn).apply(operation);
+                }
+            });
+            return operation;
+        }, operation.getId());
     }
 
     public List<Operation> findByExecutorNameAndGroupId(String executorName, UUID groupId) {
-        return jdbcTemplate.query(new QueryBuilder()
-                        .select(operationTable.allColumnsName())
-                        .from(operationTable.getTableName())
-                        .where()
-                        .whereParam(operationTable.getExecutorName(), "=")
-                        .and()
-                        .whereParam(operationTable.getGroupId(), "=")
-                        .getQuery(),
-                operationRowMapper, executorName, groupId);
+        return jdbcTemplate.query(findByExecutorNameAndGroupIdSql, operationsExtractor, executorName, groupId);
     }
 
     public Optional<Operation> findByIdWithPrevious(UUID id) {
@@ -90,96 +322,508 @@ public class OperationJdbcRepository {
     }
 
     public Operation findPrevious(Operation operation) {
-        String previousSql = new QueryBuilder()
-                .select(operationTable.allColumnsName())
-                .from("o", operationTable.getTableName())
-                .leftJoin("oob", operationOrderBindingTable.getTableName(),
-                        operationOrderBindingTable.getPreviousOperationId(),
-                        "o", operationTable.getId())
-                .where()
-                .whereParam("oob", operationOrderBindingTable.getOperationId(), "=")
-                .getQuery();
-        List<Operation> previousOperations = jdbcTemplate.query(previousSql, operationRowMapper, operation.getId());
+        List<Operation> previousOperations = jdbcTemplate.query(findPreviousSql, operationsExtractor, operation.getId());
 
         operation.setPrevious(previousOperations);
         return operation;
     }
 
+    /**
+     * Загружает одним запросом предшествующие операции для всех операций группы
+     *
+     * @param groupId идентификатор группы
+     * @return предшествующие операции, сгруппированные по идентификатору следующей за ними операции
+     */
+    public Map<UUID, List<Operation>> findPreviousByGroupId(UUID groupId) {
+        ResultSetExtractor<Map<UUID, List<Operation>>> extractor = resultSet -> {
+            Map<UUID, List<Operation>> previousOperations = new HashMap<>();
+            int operationIdIndex = 0;
+            OperationRowMapper.ColumnIndexes previousColumns = null;
+            while (resultSet.next()) {
+                if (previousColumns == null) {
+                    operationIdIndex = resultSet.findColumn(bindingOperationIdAlias);
+                    previousColumns = operationRowMapper.resolveColumns(resultSet, PREVIOUS_ALIAS + "_", true);
+                }
+                UUID operationId = resultSet.getObject(operationIdIndex, UUID.class);
+                previousOperations.computeIfAbsent(operationId, id -> new ArrayList<>())
+                        .add(operationRowMapper.mapRow(resultSet, previousColumns));
+            }
+            return previousOperations;
+        };
+        return jdbcTemplate.query(findPreviousByGroupIdSql, extractor, groupId);
+    }
+
     public List<Operation> findNext(Operation operation) {
-        String nextSql = new QueryBuilder()
-                .select(operationTable.allColumnsName())
-                .from("o", operationTable.getTableName())
-                .leftJoin("oob", operationOrderBindingTable.getTableName(),
-                        operationOrderBindingTable.getOperationId(),
-                        "o", operationTable.getId())
+        return jdbcTemplate.query(findNextSql, operationsExtractor, operation.getId());
+    }
+
+    /**
+     * Захватывает готовые к выполнению операции одним запросом и переводит их в статус {@link OperationStatus#IN_WORK}
+     * ({@link OperationStatus#VERIFICATION_IN_WORK} для операций ожидающих проверки, {@link OperationStatus#WAIT_RESPONSE_IN_WORK}
+     * для операций с истекшим ожиданием ответа).
+     * Строки, заблокированные другими транзакциями, пропускаются (FOR UPDATE SKIP LOCKED).
+     * Операции, находящиеся в работе дольше срока аренды (например, захваченные упавшим узлом), захватываются повторно
+     *
+     * @param groupCreateStartTime операции из групп, созданных позже этого момента, не захватываются
+     * @param leaseExpiredBefore   операции в работе, не обновлявшиеся с этого момента, считаются брошенными
+     * @param now                  текущий момент времени, относительно которого проверяются периоды ретраев
+     * @param limit                максимальное количество захватываемых операций
+     * @return захваченные операции в порядке приоритета вместе со статусами, из которых они были захвачены
+     */
+    public List<ClaimedOperation> claimReadyOperations(Instant groupCreateStartTime, Instant leaseExpiredBefore, Instant now, int limit,
+                                                Set<String> excludedExecutorNames) {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("statuses", CLAIM_STATUSES)
+                .addValue("inWorkStatuses", CLAIM_IN_WORK_STATUSES)
+                .addValue("leaseExpiredBefore", Timestamp.from(leaseExpiredBefore))
+                .addValue("groupStatuses", CLAIM_GROUP_STATUSES)
+                .addValue("completedStatuses", COMPLETED_STATUSES)
+                .addValue("previousCompletedStatuses", PREVIOUS_COMPLETED_STATUSES)
+                .addValue("groupCreateTimestamp", Timestamp.from(groupCreateStartTime))
+                .addValue("now", Timestamp.from(now))
+                .addValue("laneBlockingStatuses", LANE_BLOCKING_STATUSES)
+                .addValue("laneBlockingGroupStatuses", LANE_BLOCKING_GROUP_STATUSES)
+                .addValue("limit", limit)
+                .addValue("excludedExecutorNames", excludedExecutorNames);
+        return namedJdbcTemplate.query(excludedExecutorNames.isEmpty() ? claimReadyOperationsSql : claimReadyOperationsExcludingExecutorsSql, parameters,
+                claimedOperationsExtractor);
+    }
+
+    /**
+     * Определяет одним запросом операции, для которых есть более ранняя незавершенная операция в той же полосе
+     * (экзекутор + связанная сущность) из группы, доступной для выполнения
+     *
+     * @param operationIds идентификаторы проверяемых операций
+     * @return идентификаторы заблокированных операций
+     */
+    public Set<UUID> findLaneBlocked(Set<UUID> operationIds) {
+        if (operationIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", operationIds)
+                .addValue("laneBlockingStatuses", LANE_BLOCKING_STATUSES)
+                .addValue("laneBlockingGroupStatuses", LANE_BLOCKING_GROUP_STATUSES);
+        return new HashSet<>(namedJdbcTemplate.queryForList(findLaneBlockedSql, parameters, UUID.class));
+    }
+
+    private String earlierLaneOperationSql(String executorName, String relatedEntityId, String createTimestamp, String id) {
+        String laneCreateTimestamp = joinAliasAndColumn(LANE_ALIAS, operationTable.getCreateTimestamp());
+        return new QueryBuilder()
+                .select("1")
+                .from(LANE_ALIAS, operationTable.getTableName())
+                .leftJoin(LANE_GROUP_ALIAS, operationGroupTable.getTableName(), operationGroupTable.getId(),
+                        LANE_ALIAS, operationTable.getGroupId())
                 .where()
-                .whereParam("oob", operationOrderBindingTable.getPreviousOperationId(), "=")
+                .addField(String.format("%s = %s", joinAliasAndColumn(LANE_ALIAS, operationTable.getExecutorName()), executorName))
+                .and()
+                .addField(String.format("%s = %s", joinAliasAndColumn(LANE_ALIAS, operationTable.getRelatedEntityId()), relatedEntityId))
+                .and()
+                .inNamed(LANE_ALIAS, operationTable.getStatus(), "laneBlockingStatuses")
+                .and()
+                .inNamed(LANE_GROUP_ALIAS, operationGroupTable.getStatus(), "laneBlockingGroupStatuses")
+                .and()
+                .addField(String.format("(%1$s < %2$s OR (%1$s = %2$s AND %3$s < %4$s))",
+                        laneCreateTimestamp, createTimestamp, joinAliasAndColumn(LANE_ALIAS, operationTable.getId()), id))
                 .getQuery();
-        return jdbcTemplate.query(nextSql, operationRowMapper, operation.getId());
     }
 
-    public boolean updateStatus(Operation operation) {
-        String updateSql = new QueryBuilder()
+    /**
+     * Отклоняет ожидающие выполнения операции публикации актуального состояния, для которых есть более новая операция
+     * того же экзекутора по той же сущности (в любой группе)
+     *
+     * @return количество отклоненных операций
+     */
+    public int rejectSupersededActualStateOperations(Instant now) {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("type", OperationType.PUBLISH_ACTUAL_STATE.name())
+                .addValue("statuses", List.of(OperationStatus.CREATED.name(), OperationStatus.CAN_RETRY.name()))
+                .addValue("supersedingStatuses", SUPERSEDING_STATUSES)
+                .addValue("rejected", OperationStatus.REJECTED.name())
+                .addValue("comment", "Операция отклонена, т.к. создана более новая операция публикации актуального состояния")
+                .addValue("now", Timestamp.from(now));
+        return namedJdbcTemplate.update(rejectSupersededActualStateOperationsSql, parameters);
+    }
+
+    private String rejectSupersededActualStateOperationsQuery() {
+        String newerOperationSql = new QueryBuilder()
+                .select("1")
+                .from(NEWER_ALIAS, operationTable.getTableName())
+                .where()
+                .whereColumns(NEWER_ALIAS, operationTable.getExecutorName(), "=", OPERATION_ALIAS, operationTable.getExecutorName())
+                .and()
+                .whereColumns(NEWER_ALIAS, operationTable.getRelatedEntityId(), "=", OPERATION_ALIAS, operationTable.getRelatedEntityId())
+                .and()
+                .whereColumns(NEWER_ALIAS, operationTable.getCreateTimestamp(), ">", OPERATION_ALIAS, operationTable.getCreateTimestamp())
+                .and()
+                .whereNamedParam(NEWER_ALIAS, operationTable.getType(), "=", "type")
+                .and()
+                .inNamed(NEWER_ALIAS, operationTable.getStatus(), "supersedingStatuses")
+                .getQuery();
+        String supersededOperationsSql = new QueryBuilder()
+                .select(joinAliasAndColumn(OPERATION_ALIAS, operationTable.getId()))
+                .from(OPERATION_ALIAS, operationTable.getTableName())
+                .where()
+                .whereNamedParam(OPERATION_ALIAS, operationTable.getType(), "=", "type")
+                .and()
+                .inNamed(OPERATION_ALIAS, operationTable.getStatus(), "statuses")
+                .and()
+                .addField(String.format("%s IS NOT NULL", joinAliasAndColumn(OPERATION_ALIAS, operationTable.getRelatedEntityId())))
+                .and()
+                .exists(newerOperationSql)
+                .forUpdateSkipLocked(OPERATION_ALIAS)
+                .getQuery();
+        return new QueryBuilder()
+                .with(SUPERSEDED_ALIAS, supersededOperationsSql)
+                .update(OPERATION_ALIAS, operationTable.getTableName())
+                .addField(String.format("%s = :rejected", operationTable.getStatus().name()))
+                .addField(String.format(", %s = :comment", operationTable.getComment().name()))
+                .addField(String.format(", %s = %s + 1", operationTable.getVersion().name(), joinAliasAndColumn(OPERATION_ALIAS, operationTable.getVersion())))
+                .addField(String.format(", %s = :now", operationTable.getUpdateTimestamp().name()))
+                .from(SUPERSEDED_ALIAS)
+                .where()
+                .whereColumns(OPERATION_ALIAS, operationTable.getId(), "=", SUPERSEDED_ALIAS, operationTable.getId())
+                .getQuery();
+    }
+
+    /**
+     * Возвращает захваченные, но не переданные на выполнение операции в статус, из которого их можно захватить повторно
+     *
+     * @return количество операций, с которых снят захват
+     */
+    public int releaseClaims(Collection<UUID> operationIds, Instant now) {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", operationIds)
+                .addValue("now", Timestamp.from(now));
+        return namedJdbcTemplate.update(releaseClaimSql, parameters);
+    }
+
+    /**
+     * Продлевает захват выполняющихся операций: время захвата отсчитывается от update_timestamp.
+     * Версия не увеличивается, чтобы не конфликтовать с сохранением результата выполнения
+     *
+     * @return количество операций, захват которых продлен
+     */
+    public int renewClaims(Collection<UUID> operationIds, Instant now) {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", operationIds)
+                .addValue("now", Timestamp.from(now));
+        return namedJdbcTemplate.update(renewClaimSql, parameters);
+    }
+
+    private String renewClaimQuery() {
+        return new QueryBuilder()
                 .update(operationTable.getTableName())
-                .paramsForUpdate(Stream.of(operationTable.getUpdateTimestamp(),
-                                operationTable.getStatus(),
-                                operationTable.getVersion())
-                        .toArray(Column[]::new))
+                .addField(String.format("%s = :now", operationTable.getUpdateTimestamp().name()))
                 .where()
-                .whereParam(operationTable.getId(), "=")
+                .inNamed(operationTable.getId(), "ids")
                 .and()
-                .whereParam(operationTable.getVersion(), "=")
+                .addField(String.format("%s IN (%s)", operationTable.getStatus().name(), OperationStatus.IN_WORK_STATUSES.stream()
+                        .map(inWorkStatus -> "'" + inWorkStatus + "'")
+                        .collect(Collectors.joining(", "))))
                 .getQuery();
-        int columnsInserted = jdbcTemplate.update(updateSql,
-                Timestamp.from(Instant.now()),
-                operation.getStatus(),
-                operation.getVersion(),
-                operation.getId(), operation.getVersion() + 1);
-        return columnsInserted == 1;
     }
 
-    public boolean update(Operation operation) {
-        String updateSql = new QueryBuilder()
+    private String releaseClaimQuery() {
+        String status = operationTable.getStatus().name();
+        return new QueryBuilder()
                 .update(operationTable.getTableName())
-                .paramsForUpdate(Arrays.stream(operationTable.allColumns())
-                        .filter(column -> !operationTable.getId().equals(column))
-                        .filter(column -> !operationTable.getCreateTimestamp().equals(column))
-                        .toArray(Column[]::new))
+                .addField(String.format("%s = CASE WHEN %s = '%s' THEN '%s' WHEN %s = '%s' THEN '%s' WHEN %s = 0 THEN '%s' ELSE '%s' END",
+                        status, status, OperationStatus.VERIFICATION_IN_WORK, OperationStatus.VERIFICATION,
+                        status, OperationStatus.WAIT_RESPONSE_IN_WORK, OperationStatus.WAIT_RESPONSE,
+                        operationTable.getAttemptCount().name(), OperationStatus.CREATED, OperationStatus.CAN_RETRY))
+                .addField(String.format(", %1$s = %1$s + 1", operationTable.getVersion().name()))
+                .addField(String.format(", %s = :now", operationTable.getUpdateTimestamp().name()))
                 .where()
-                .whereParam(operationTable.getId(), "=")
+                .inNamed(operationTable.getId(), "ids")
                 .and()
-                .whereParam(operationTable.getVersion(), "=")
+                .addField(String.format("%s IN (%s)", status, OperationStatus.IN_WORK_STATUSES.stream()
+                        .map(inWorkStatus -> "'" + inWorkStatus + "'")
+                        .collect(Collectors.joining(", "))))
                 .getQuery();
-        int columnsUpdated = jdbcTemplate.update(updateSql,
-                operation.getGroupId(),
-                operation.getExecutorName(),
-                operation.getType().name(),
-                operation.getParams(),
-                operation.getDescription(),
-                operation.getRelatedEntityId(),
-                operation.getRollbackType().name(),
-                operation.getImportanceType().name(),
-                operation.getPriority(),
-                operation.getAttemptCount(),
-                operation.getMaxAttemptCount(),
-                operation.getRetryDelay(),
-                operation.getWaitResponseTimeout(),
-                Timestamp.from(Instant.now()),
-                operation.getDeadlineTimestamp() == null ? null : Timestamp.from(operation.getDeadlineTimestamp()),
-                operation.getLastExecutionTimeStamp() == null ? null : Timestamp.from(operation.getLastExecutionTimeStamp()),
+    }
+
+    private String claimReadyOperationsQuery(boolean excludeExecutors) {
+        String lastExecution = joinAliasAndColumn(OPERATION_ALIAS, operationTable.getLastExecutionTimeStamp());
+        String previousNotCompletedSql = new QueryBuilder()
+                .select("1")
+                .from(BINDING_ALIAS, operationOrderBindingTable.getTableName())
+                .leftJoin(PREVIOUS_ALIAS, operationTable.getTableName(), operationTable.getId(),
+                        BINDING_ALIAS, operationOrderBindingTable.getPreviousOperationId())
+                .where()
+                .whereColumns(BINDING_ALIAS, operationOrderBindingTable.getOperationId(), "=", OPERATION_ALIAS, operationTable.getId())
+                .and()
+                .addField(String.format("%s NOT IN (:previousCompletedStatuses)", joinAliasAndColumn(PREVIOUS_ALIAS, operationTable.getStatus())))
+                .getQuery();
+        String uncompletedCriticalSql = new QueryBuilder()
+                .select("1")
+                .from(CRITICAL_ALIAS, operationTable.getTableName())
+                .where()
+                .whereColumns(CRITICAL_ALIAS, operationTable.getGroupId(), "=", OPERATION_ALIAS, operationTable.getGroupId())
+                .and()
+                .addField(String.format("%s = '%s'", joinAliasAndColumn(CRITICAL_ALIAS, operationTable.getImportanceType()), OperationImportanceType.CRITICAL))
+                .and()
+                .addField(String.format("%s NOT IN (:completedStatuses)", joinAliasAndColumn(CRITICAL_ALIAS, operationTable.getStatus())))
+                .getQuery();
+        QueryBuilder readyOperationsQuery = new QueryBuilder()
+                .select(String.format("%s, %s AS %s", joinAliasAndColumn(OPERATION_ALIAS, operationTable.getId()),
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getStatus()), CLAIMED_FROM_STATUS_ALIAS))
+                .from(OPERATION_ALIAS, operationTable.getTableName())
+                .leftJoin(GROUP_ALIAS, operationGroupTable.getTableName(), operationGroupTable.getId(),
+                        OPERATION_ALIAS, operationTable.getGroupId())
+                .where()
+                .addField("(")
+                .inNamed(OPERATION_ALIAS, operationTable.getStatus(), "statuses")
+                .or()
+                .addField("(")
+                .inNamed(OPERATION_ALIAS, operationTable.getStatus(), "inWorkStatuses")
+                .and()
+                .whereNamedParam(OPERATION_ALIAS, operationTable.getUpdateTimestamp(), "<", "leaseExpiredBefore")
+                .addField("))")
+                .and()
+                .inNamed(GROUP_ALIAS, operationGroupTable.getStatus(), "groupStatuses")
+                .and()
+                .whereNamedParam(GROUP_ALIAS, operationGroupTable.getCreateTimestamp(), "<", "groupCreateTimestamp")
+                .and()
+                .addField(String.format("(%1$s IS NULL OR %1$s + %2$s * INTERVAL '1 millisecond' < :now)",
+                        lastExecution, joinAliasAndColumn(OPERATION_ALIAS, operationTable.getRetryDelay())))
+                .and()
+                .addField(String.format("(%s <> '%s' OR %s + COALESCE(%s, %d) * INTERVAL '1 millisecond' < :now)",
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getStatus()), OperationStatus.WAIT_RESPONSE,
+                        lastExecution, joinAliasAndColumn(OPERATION_ALIAS, operationTable.getWaitResponseTimeout()), DEFAULT_WAIT_RESPONSE_TIMEOUT))
+                .and()
+                .notExists(previousNotCompletedSql)
+                .and()
+                .addField(String.format("(%s = '%s' OR NOT EXISTS (%s))",
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getImportanceType()), OperationImportanceType.CRITICAL, uncompletedCriticalSql))
+                .and()
+                .addField(String.format("(%s <> '%s' OR %s IS NULL OR NOT EXISTS (%s))",
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getType()), OperationType.PUBLISH_DIFF_LOG,
+                        joinAliasAndColumn(OPERATION_ALIAS, operationTable.getRelatedEntityId()),
+                        earlierLaneOperationSql(
+                                joinAliasAndColumn(OPERATION_ALIAS, operationTable.getExecutorName()),
+                                joinAliasAndColumn(OPERATION_ALIAS, operationTable.getRelatedEntityId()),
+                                joinAliasAndColumn(OPERATION_ALIAS, operationTable.getCreateTimestamp()),
+                                joinAliasAndColumn(OPERATION_ALIAS, operationTable.getId()))));
+        if (excludeExecutors) {
+            readyOperationsQuery
+                    .and()
+                    .addField(String.format("%s NOT IN (:excludedExecutorNames)", joinAliasAndColumn(OPERATION_ALIAS, operationTable.getExecutorName())));
+        }
+        String readyOperationsSql = readyOperationsQuery
+                .orderBy(OPERATION_ALIAS, operationTable.getPriority())
+                .thenOrderBy(OPERATION_ALIAS, operationTable.getCreateTimestamp())
+                .limitNamed("limit")
+                .forUpdateSkipLocked(OPERATION_ALIAS)
+                .getQuery();
+        String status = operationTable.getStatus().name();
+        String claimedStatus = joinAliasAndColumn(OPERATION_ALIAS, operationTable.getStatus());
+        // статус в работе сохраняет исходный статус операции: процессор проваливает попытку операции с истекшим ожиданием ответа,
+        // а при снятии захвата операция возвращается в исходный статус
+        return new QueryBuilder()
+                .with(READY_ALIAS, readyOperationsSql)
+                .update(OPERATION_ALIAS, operationTable.getTableName())
+                .addField(String.format("%s = CASE WHEN %s IN ('%s', '%s') THEN '%s' WHEN %s IN ('%s', '%s') THEN '%s' ELSE '%s' END",
+                        status,
+                        claimedStatus, OperationStatus.VERIFICATION, OperationStatus.VERIFICATION_IN_WORK, OperationStatus.VERIFICATION_IN_WORK,
+                        claimedStatus, OperationStatus.WAIT_RESPONSE, OperationStatus.WAIT_RESPONSE_IN_WORK, OperationStatus.WAIT_RESPONSE_IN_WORK,
+                        OperationStatus.IN_WORK))
+                .addField(String.format(", %s = %s + 1", operationTable.getVersion().name(), joinAliasAndColumn(OPERATION_ALIAS, operationTable.getVersion())))
+                .addField(String.format(", %s = :now", operationTable.getUpdateTimestamp().name()))
+                .from(READY_ALIAS)
+                .where()
+                .whereColumns(OPERATION_ALIAS, operationTable.getId(), "=", READY_ALIAS, operationTable.getId())
+                .returning(String.format("%s, %s.%s", operationTable.allColumnsNameWithAlias(OPERATION_ALIAS), READY_ALIAS, CLAIMED_FROM_STATUS_ALIAS))
+                .getQuery();
+    }
+
+    private ResultSetExtractor<List<ClaimedOperation>> claimedOperationsExtractor(OperationRowMapper operationRowMapper) {
+        return resultSet -> {
+            List<ClaimedOperation> claimedOperations = new ArrayList<>();
+            OperationRowMapper.ColumnIndexes columns = null;
+            int claimedFromStatusIndex = 0;
+            while (resultSet.next()) {
+                if (columns == null) {
+                    columns = operationRowMapper.resolveColumns(resultSet, OPERATION_ALIAS + "_", true);
+                    claimedFromStatusIndex = resultSet.findColumn(CLAIMED_FROM_STATUS_ALIAS);
+                }
+                claimedOperations.add(new ClaimedOperation(trackChanges(operationRowMapper.mapRow(resultSet, columns)),
+                        OperationStatus.valueOf(resultSet.getString(claimedFromStatusIndex))));
+            }
+            return claimedOperations;
+        };
+    }
+
+    /**
+     * Обновляет только статус операции с проверкой версии, остальные колонки не перезаписываются.
+     * Используется при взятии операции в работу
+     */
+    public boolean updateStatus(Operation operation) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int columnsUpdated = jdbcTemplate.update(updateStatusSql,
                 operation.getStatus().name(),
-                operation.getExecutionResult() == null ? null : operation.getExecutionResult().name(),
-                operation.getComment(),
+                now,
                 operation.getVersion() + 1,
                 operation.getId(), operation.getVersion());
+        if (columnsUpdated == 1) {
+            markUpdated(operation, now);
+        }
         return columnsUpdated == 1;
     }
 
-    public boolean save(Operation operation) {
-        String insertSql = new QueryBuilder()
-                .insert(operationTable.getTableName(), operationTable.allColumns())
+    /**
+     * Обновляет операцию с проверкой версии. Для операции, прочитанной из БД, записываются только колонки,
+     * измененные с момента чтения
+     */
+    public boolean update(Operation operation) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Column<?>> changedColumns = getChangedColumns(operation);
+        int columnsUpdated = jdbcTemplate.update(updateQuery(changedColumns), toUpdateParams(operation, changedColumns, now));
+        if (columnsUpdated == 1) {
+            markUpdated(operation, now);
+        }
+        return columnsUpdated == 1;
+    }
+
+    /**
+     * Обновляет операции пакетными запросами, операции с одинаковым набором измененных колонок попадают в один пакет
+     *
+     * @return количество обновленных операций (операции, измененные конкурентно, не обновляются)
+     */
+    public int updateAll(List<Operation> operations) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int updatedCount = 0;
+        Map<List<Column<?>>, List<Operation>> operationsByChangedColumns = operations.stream()
+                .collect(Collectors.groupingBy(this::getChangedColumns, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<List<Column<?>>, List<Operation>> entry : operationsByChangedColumns.entrySet()) {
+            List<Operation> batch = entry.getValue();
+            int[] updated = jdbcTemplate.batchUpdate(updateQuery(entry.getKey()), batch.stream()
+                    .map(operation -> toUpdateParams(operation, entry.getKey(), now))
+                    .toList());
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 1) {
+                    markUpdated(batch.get(i), now);
+                    updatedCount++;
+                }
+            }
+        }
+        return updatedCount;
+    }
+
+    private List<Column<?>> getChangedColumns(Operation operation) {
+        return operation.getPersistedColumnValues()
+                .map(persisted -> {
+                    List<Column<?>> changedColumns = new ArrayList<>();
+                    for (int i = 0; i < updatableColumnList.size(); i++) {
+                        Column<?> column = updatableColumnList.get(i);
+                        if (!Objects.equals(updatableColumns.get(column).apply(operation), persisted[i])) {
+                            changedColumns.add(column);
+                        }
+                    }
+                    return changedColumns;
+                })
+                .orElse(updatableColumnList);
+    }
+
+    /**
+     * Включает отслеживание изменений колонок операции, загруженной для обновления:
+     * при сохранении записываются только колонки, измененные с момента чтения
+     */
+    private Operation trackChanges(Operation operation) {
+        operation.markPersisted(getColumnValues(operation));
+        return operation;
+    }
+
+    /**
+     * Значения обновляемых колонок в порядке {@link #updatableColumnList}
+     */
+    private Object[] getColumnValues(Operation operation) {
+        Object[] values = new Object[updatableColumnList.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = updatableColumns.get(updatableColumnList.get(i)).apply(operation);
+        }
+        return values;
+    }
+
+    private String updateQuery(List<Column<?>> changedColumns) {
+        return updateQueries.computeIfAbsent(changedColumns, this::createUpdateQuery);
+    }
+
+    private String createUpdateQuery(List<Column<?>> changedColumns) {
+        return new QueryBuilder()
+                .update(operationTable.getTableName())
+                .paramsForUpdate(Stream.concat(changedColumns.stream(),
+                                Stream.of(operationTable.getUpdateTimestamp(), operationTable.getVersion()))
+                        .toArray(Column[]::new))
+                .where()
+                .whereParam(operationTable.getId(), "=")
+                .and()
+                .whereParam(operationTable.getVersion(), "=")
                 .getQuery();
-        int columnsInserted = jdbcTemplate.update(insertSql,
+    }
+
+    private Object[] toUpdateParams(Operation operation, List<Column<?>> changedColumns, Timestamp now) {
+        Object[] params = new Object[changedColumns.size() + 4];
+        for (int i = 0; i < changedColumns.size(); i++) {
+            params[i] = updatableColumns.get(changedColumns.get(i)).apply(operation);
+        }
+        params[changedColumns.size()] = now;
+        params[changedColumns.size() + 1] = operation.getVersion() + 1;
+        params[changedColumns.size() + 2] = operation.getId();
+        params[changedColumns.size() + 3] = operation.getVersion();
+        return params;
+    }
+
+    private void markUpdated(Operation operation, Timestamp now) {
+        operation.setVersion(operation.getVersion() + 1);
+        operation.setUpdateTimestamp(now.toInstant());
+        trackChanges(operation);
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+
+    private static String toName(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+    public boolean save(Operation operation) {
+        int columnsInserted = jdbcTemplate.update(insertSql, toInsertParams(operation, Timestamp.from(Instant.now())));
+        if (columnsInserted == 1) {
+            for (Operation previousOperation : operation.getPrevious()) {
+                jdbcTemplate.update(insertBindingSql, operation.getId(), previousOperation.getId());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Сохраняет операции и связи с предшествующими операциями пакетными вставками (JDBC batch)
+     *
+     * @param operations операции с заполненными идентификаторами
+     */
+    public void saveAll(List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(insertSql,
+                operations.stream()
+                        .map(operation -> toInsertParams(operation, now))
+                        .collect(Collectors.toList()));
+        List<Object[]> bindings = operations.stream()
+                .flatMap(operation -> operation.getPrevious().stream()
+                        .map(previousOperation -> new Object[]{operation.getId(), previousOperation.getId()}))
+                .collect(Collectors.toList());
+        if (!bindings.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertBindingSql, bindings);
+        }
+    }
+
+    private Object[] toInsertParams(Operation operation, Timestamp now) {
+        return new Object[]{
                 operation.getId(),
                 operation.getGroupId(),
                 operation.getExecutorName(),
@@ -194,22 +838,23 @@ public class OperationJdbcRepository {
                 operation.getMaxAttemptCount(),
                 operation.getRetryDelay(),
                 operation.getWaitResponseTimeout(),
-                Timestamp.from(Instant.now()),
-                Timestamp.from(Instant.now()),
+                now,
+                now,
                 operation.getDeadlineTimestamp() == null ? null : Timestamp.from(operation.getDeadlineTimestamp()),
                 operation.getLastExecutionTimeStamp() == null ? null : Timestamp.from(operation.getLastExecutionTimeStamp()),
                 operation.getStatus().name(),
                 operation.getExecutionResult() == null ? null : operation.getExecutionResult().name(),
                 operation.getComment(),
-                0);
-        if (columnsInserted == 1) {
-            for (Operation previousOperation : operation.getPrevious()) {
-                jdbcTemplate.update(new QueryBuilder()
-                        .insert(operationOrderBindingTable.getTableName(), operationOrderBindingTable.allColumns())
-                        .getQuery(), operation.getId(), previousOperation.getId());
-            }
-            return true;
-        }
-        return false;
+                0
+        };
+    }
+
+    /**
+     * Операция, захваченная {@link #claimReadyOperations}
+     *
+     * @param operation      операция в статусе "в работе"
+     * @param previousStatus статус операции до захвата
+     */
+    public record ClaimedOperation(Operation operation, OperationStatus previousStatus) {
     }
 }
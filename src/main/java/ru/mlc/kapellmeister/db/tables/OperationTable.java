@@ -3,6 +3,8 @@ package ru.mlc.kapellmeister.db.tables;
 import lombok.Value;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @Value
@@ -56,4 +58,21 @@ public class OperationTable implements Table {
                 comment,
                 version};
     }
+
+    /**
+     * Колонки полезной нагрузки операции, не нужные для планирования выполнения
+     */
+    public Column<?>[] payloadColumns() {
+        return new Column[]{params, description, comment};
+    }
+
+    /**
+     * Все колонки, кроме колонок полезной нагрузки
+     */
+    public Column<?>[] schedulingColumns() {
+        List<Column<?>> payloadColumns = List.of(payloadColumns());
+        return Arrays.stream(allColumns())
+                .filter(column -> !payloadColumns.contains(column))
+                .toArray(Column[]::new);
+    }
 }
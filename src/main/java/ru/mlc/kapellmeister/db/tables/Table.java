@@ -29,6 +29,12 @@ public interface Table {
                 .collect(Collectors.joining(","));
     }
 
+    default String columnsNameWithAlias(String alias, Column<?>... columns) {
+        return Arrays.stream(columns)
+                .map(column -> buildColumnNameWithAlias(column.name(), alias))
+                .collect(Collectors.joining(","));
+    }
+
     default String buildColumnNameWithAlias(String columnName, String alias) {
         if (alias.isBlank()) {
             return columnName;
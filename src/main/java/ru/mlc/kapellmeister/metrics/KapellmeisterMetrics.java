@@ -0,0 +1,64 @@
+package ru.mlc.kapellmeister.metrics;
+
+import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Метрики жизненного цикла операций. По умолчанию используется {@link #NOOP},
+ * при kapellmeister.metrics-enabled=true метрики публикуются в Micrometer
+ */
+public interface KapellmeisterMetrics {
+
+    KapellmeisterMetrics NOOP = new KapellmeisterMetrics() {
+    };
+
+    /**
+     * Вызываемые методы экзекутора
+     */
+    enum ExecutorCall {
+        EXECUTE,
+        EXECUTE_BATCH,
+        VERIFY,
+        ROLLBACK
+    }
+
+    /**
+     * Вызов метода экзекутора с замером длительности
+     *
+     * @param executorName имя экзекутора
+     * @param call         вызываемый метод
+     * @param action       вызов экзекутора
+     * @return результат вызова
+     */
+    default <T> T recordExecutorCall(String executorName, ExecutorCall call, Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * Сохранено изменение операции
+     *
+     * @param operation      операция после сохранения
+     * @param previousStatus статус операции до изменения (null для операции, прочитанной не из БД)
+     */
+    default void operationUpdated(Operation operation, OperationStatus previousStatus) {
+    }
+
+    /**
+     * Регистрация показателей загрузки пула выполнения операций
+     */
+    default void bindPool(KapellmeisterOperationThreadPoolExecutor pool) {
+    }
+
+    /**
+     * Завершена итерация шедуллера
+     *
+     * @param duration        длительность итерации
+     * @param dispatchedCount количество операций, переданных на выполнение за итерацию
+     */
+    default void schedulerIterationCompleted(Duration duration, int dispatchedCount) {
+    }
+}
@@ -0,0 +1,92 @@
+package ru.mlc.kapellmeister.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Публикация метрик капельмейстера в Micrometer
+ */
+@RequiredArgsConstructor
+public class MicrometerKapellmeisterMetrics implements KapellmeisterMetrics {
+
+    public static final String EXECUTOR_CALL = "kapellmeister.executor.call";
+    public static final String STATUS_TRANSITIONS = "kapellmeister.operation.status.transitions";
+    public static final String OPERATION_LATENCY = "kapellmeister.operation.latency";
+    public static final String POOL_QUEUED = "kapellmeister.pool.queued";
+    public static final String POOL_ACTIVE = "kapellmeister.pool.active";
+    public static final String POOL_AVAILABLE = "kapellmeister.pool.available";
+    public static final String SCHEDULER_ITERATION = "kapellmeister.scheduler.iteration";
+    public static final String SCHEDULER_DISPATCHED = "kapellmeister.scheduler.dispatched";
+
+    private static final String EXECUTOR_TAG = "executor";
+
+    private final MeterRegistry registry;
+
+    @Override
+    public <T> T recordExecutorCall(String executorName, ExecutorCall call, Supplier<T> action) {
+        return Timer.builder(EXECUTOR_CALL)
+                .description("Длительность вызова экзекутора")
+                .tag(EXECUTOR_TAG, executorName)
+                .tag("call", call.name())
+                .register(registry)
+                .record(action);
+    }
+
+    @Override
+    public void operationUpdated(Operation operation, OperationStatus previousStatus) {
+        if (previousStatus == operation.getStatus()) {
+            return;
+        }
+        Counter.builder(STATUS_TRANSITIONS)
+                .description("Количество переходов операций между статусами")
+                .tag(EXECUTOR_TAG, operation.getExecutorName())
+                .tag("from", previousStatus == null ? "UNKNOWN" : previousStatus.name())
+                .tag("to", operation.getStatus().name())
+                .register(registry)
+                .increment();
+        if (operation.getStatus() == OperationStatus.SUCCESS && operation.getCreateTimestamp() != null) {
+            Timer.builder(OPERATION_LATENCY)
+                    .description("Время от создания операции до ее успешного выполнения")
+                    .tag(EXECUTOR_TAG, operation.getExecutorName())
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(Duration.between(operation.getCreateTimestamp(), Instant.now()));
+        }
+    }
+
+    @Override
+    public void bindPool(KapellmeisterOperationThreadPoolExecutor pool) {
+        Gauge.builder(POOL_QUEUED, pool, KapellmeisterOperationThreadPoolExecutor::getQueuedCount)
+                .description("Количество операций в очереди пула")
+                .register(registry);
+        Gauge.builder(POOL_ACTIVE, pool, KapellmeisterOperationThreadPoolExecutor::getActiveCount)
+                .description("Количество выполняющихся операций")
+                .register(registry);
+        Gauge.builder(POOL_AVAILABLE, pool, KapellmeisterOperationThreadPoolExecutor::getAvailableCapacity)
+                .description("Количество свободных мест в пуле")
+                .register(registry);
+    }
+
+    @Override
+    public void schedulerIterationCompleted(Duration duration, int dispatchedCount) {
+        Timer.builder(SCHEDULER_ITERATION)
+                .description("Длительность итерации шедуллера")
+                .register(registry)
+                .record(duration);
+        DistributionSummary.builder(SCHEDULER_DISPATCHED)
+                .description("Количество операций, переданных на выполнение за итерацию шедуллера")
+                .register(registry)
+                .record(dispatchedCount);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.mlc.kapellmeister.sceduling;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.configuration.KapellmeisterConfigurationProperties;
+import ru.mlc.kapellmeister.configuration.KapellmeisterSchedulingConfigurationProperties;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
+import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Общая итерация шедуллеров, наследники задают только расписание и способ исключения одновременного запуска на узлах
+ */
+@Slf4j
+@RequiredArgsConstructor
+public abstract class AbstractKapellmeisterSpringScheduler implements KapellmeisterScheduler {
+
+    private final KapellmeisterEngine kapellmeisterEngine;
+    private final KapellmeisterSchedulingConfigurationProperties schedulingConfigurationProperties;
+    private final KapellmeisterConfigurationProperties configurationProperties;
+    private final KapellmeisterTimeSynchronizationService kapellmeisterTimeSynchronizationService;
+    private final KapellmeisterMetrics kapellmeisterMetrics;
+
+    /**
+     * Выполняет одну итерацию шедуллера
+     *
+     * @param mode описание режима работы шедуллера для логов
+     */
+    protected void executeIteration(String mode) {
+        Instant jobDeadLine = kapellmeisterTimeSynchronizationService.now().plusMillis(schedulingConfigurationProperties.getForcedStopWhenTimeLeft());
+        log.info("Капельмейстер начал работу по шедуллеру{} (Максимальное время итерации до {})", mode, jobDeadLine);
+        long startTime = System.nanoTime();
+        Set<UUID> executedOperations = kapellmeisterEngine.executeAvailableOperationGroups(jobDeadLine, configurationProperties.getMaxCountOfOperationsForIteration());
+        kapellmeisterMetrics.schedulerIterationCompleted(Duration.ofNanos(System.nanoTime() - startTime), executedOperations.size());
+        log.info("Итерация работы капельмейстера по шедуллеру{} закончена", mode);
+    }
+}
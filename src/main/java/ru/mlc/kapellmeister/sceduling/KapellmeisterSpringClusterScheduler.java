@@ -0,0 +1,30 @@
+package ru.mlc.kapellmeister.sceduling;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.configuration.KapellmeisterConfigurationProperties;
+import ru.mlc.kapellmeister.configuration.KapellmeisterSchedulingConfigurationProperties;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
+import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
+
+/**
+ * Шедуллер для запуска на нескольких узлах одновременно.
+ * Глобальная блокировка не используется, узлы разбирают операции захватом строк (FOR UPDATE SKIP LOCKED),
+ * операции упавшего узла захватываются повторно после истечения kapellmeister.claim-lease-timeout
+ */
+public class KapellmeisterSpringClusterScheduler extends AbstractKapellmeisterSpringScheduler {
+
+    public KapellmeisterSpringClusterScheduler(KapellmeisterEngine kapellmeisterEngine,
+                                               KapellmeisterSchedulingConfigurationProperties schedulingConfigurationProperties,
+                                               KapellmeisterConfigurationProperties configurationProperties,
+                                               KapellmeisterTimeSynchronizationService kapellmeisterTimeSynchronizationService,
+                                               KapellmeisterMetrics kapellmeisterMetrics) {
+        super(kapellmeisterEngine, schedulingConfigurationProperties, configurationProperties, kapellmeisterTimeSynchronizationService, kapellmeisterMetrics);
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${kapellmeister.scheduling.first-start-delay}", fixedDelayString = "${kapellmeister.scheduling.restart-delay}")
+    public void executeAvailableOperationGroups() {
+        executeIteration(" в режиме кластера");
+    }
+}
@@ -0,0 +1,83 @@
+package ru.mlc.kapellmeister.service;
+
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Накопитель захваченных операций {@link ru.mlc.kapellmeister.api.BatchOperationExecutor} по экзекуторам.
+ * Пачка готова к выполнению, когда набран максимальный размер или истекло время ожидания с момента добавления первой операции
+ */
+class ClaimedBatchAccumulator {
+
+    private final int maxBatchSize;
+    private final Duration lingerTime;
+    private final Map<String, Batch> batches = new LinkedHashMap<>();
+
+    ClaimedBatchAccumulator(int maxBatchSize, Duration lingerTime) {
+        this.maxBatchSize = maxBatchSize;
+        this.lingerTime = lingerTime;
+    }
+
+    /**
+     * Добавляет операцию в пачку ее экзекутора
+     *
+     * @return заполненная пачка, если с добавлением операции набран максимальный размер
+     */
+    Optional<List<Operation>> add(Operation operation, Instant now) {
+        Batch batch = batches.computeIfAbsent(operation.getExecutorName(), executorName -> new Batch(now.plus(lingerTime)));
+        batch.operations.add(operation);
+        if (batch.operations.size() >= maxBatchSize) {
+            batches.remove(operation.getExecutorName());
+            return Optional.of(batch.operations);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Извлекает пачки, время ожидания которых истекло
+     */
+    List<List<Operation>> drainExpired(Instant now) {
+        List<List<Operation>> expired = new ArrayList<>();
+        Iterator<Batch> iterator = batches.values().iterator();
+        while (iterator.hasNext()) {
+            Batch batch = iterator.next();
+            if (!batch.expiresAt.isAfter(now)) {
+                expired.add(batch.operations);
+                iterator.remove();
+            }
+        }
+        return expired;
+    }
+
+    List<List<Operation>> drainAll() {
+        List<List<Operation>> all = batches.values().stream()
+                .map(batch -> batch.operations)
+                .toList();
+        batches.clear();
+        return all;
+    }
+
+    int size() {
+        return batches.values().stream()
+                .mapToInt(batch -> batch.operations.size())
+                .sum();
+    }
+
+    private static class Batch {
+
+        private final Instant expiresAt;
+        private final List<Operation> operations = new ArrayList<>();
+
+        private Batch(Instant expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -25,6 +25,20 @@ public class KapellmeisterAfterCommitService {
         publisher.publishEvent(new Event(this, groupId, operationIds));
     }
 
+    /**
+     * Инициирует выполнение следующих операций после коммита транзакции, в которой завершилась предшествующая операция
+     *
+     * @param groupId      группа следующих операций
+     * @param operationIds следующие операции
+     */
+    public void triggerNextOperations(UUID groupId, Set<UUID> operationIds) {
+        publisher.publishEvent(new NextOperationsEvent(this, groupId, operationIds));
+    }
+
+    public boolean isCompletionTriggerEnabled() {
+        return properties.getCompletionTriggerEnabled();
+    }
+
     @Getter
     public static class Event extends ApplicationEvent {
 
@@ -40,6 +54,37 @@ public class KapellmeisterAfterCommitService {
         }
     }
 
+    @Getter
+    public static class NextOperationsEvent extends ApplicationEvent {
+
+        private final UUID groupId;
+        private final Set<UUID> operationIds;
+
+        public NextOperationsEvent(Object source, UUID groupId, Set<UUID> operationIds) {
+            super(source);
+            this.groupId = groupId;
+            this.operationIds = operationIds;
+        }
+    }
+
+    @Slf4j
+    @RequiredArgsConstructor
+    public static class NextOperationsTrigger {
+
+        private final KapellmeisterEngine kapellmeisterEngine;
+        private final KapellmeisterTimeSynchronizationService timeService;
+        private final KapellmeisterConfigurationProperties properties;
+
+        @Async
+        @TransactionalEventListener
+        public void execute(NextOperationsEvent event) {
+            Set<UUID> operationIds = event.getOperationIds();
+            Instant jobDeadLine = timeService.calculateAfterCommitExecutionInterruptInstant();
+            log.info("Инициировано выполнение следующих операций {} ", operationIds);
+            kapellmeisterEngine.processOperationsOfGroup(event.getGroupId(), jobDeadLine, o -> operationIds.contains(o.getId()), properties.getMaxCountOfOperationsForIteration());
+        }
+    }
+
     @Slf4j
     @RequiredArgsConstructor
     public static class Trigger {
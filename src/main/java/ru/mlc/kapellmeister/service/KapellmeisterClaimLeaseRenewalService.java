@@ -0,0 +1,62 @@
+package ru.mlc.kapellmeister.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Продление захвата операций, выполняющихся на узле.
+ * Без продления операция, выполняющаяся дольше kapellmeister.claim-lease-timeout, считается брошенной
+ * и захватывается повторно другим узлом. Продление выполняется отдельным потоком, независимо от загрузки пула и шедуллера
+ */
+@Slf4j
+public class KapellmeisterClaimLeaseRenewalService implements AutoCloseable {
+
+    private final KapellmeisterOperationThreadPoolExecutor operationThreadPoolExecutor;
+    private final KapellmeisterStorageService storageService;
+    private final ScheduledExecutorService scheduler;
+
+    public KapellmeisterClaimLeaseRenewalService(KapellmeisterOperationThreadPoolExecutor operationThreadPoolExecutor,
+                                                 KapellmeisterStorageService storageService,
+                                                 long renewalInterval) {
+        this.operationThreadPoolExecutor = operationThreadPoolExecutor;
+        this.storageService = storageService;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kapellmeister-claim-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::renewClaims, renewalInterval, renewalInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Продлевает захват всех переданных в пул и еще не завершенных операций
+     *
+     * @return количество операций, захват которых продлен
+     */
+    public int renewClaims() {
+        Set<UUID> operationIds = operationThreadPoolExecutor.getOperationIdsInExecution();
+        if (operationIds.isEmpty()) {
+            return 0;
+        }
+        try {
+            int renewed = storageService.renewClaims(operationIds);
+            log.debug("Продлен захват {} операций", renewed);
+            return renewed;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось продлить захват выполняющихся операций {}", operationIds, e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -10,18 +10,21 @@ import ru.mlc.kapellmeister.api.KapellmeisterEngine;
 import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterConfigurationProperties;
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
 import ru.mlc.kapellmeister.constants.OperationGroupStatus;
 import ru.mlc.kapellmeister.constants.OperationImportanceType;
 import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
 import ru.mlc.kapellmeister.constants.RollbackType;
 import ru.mlc.kapellmeister.db.Operation;
 import ru.mlc.kapellmeister.db.OperationGroup;
 import ru.mlc.kapellmeister.exceptions.UnavailableUpdateOperationStateException;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -38,9 +41,15 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
     public static final Integer UNLIMITED = -1;
 
     private final boolean executingEnabled;
+    private final KapellmeisterConfigurationProperties properties;
     private final KapellmeisterStorageService kapellmeisterStorageService;
     private final KapellmeisterTimeSynchronizationService timeService;
     private final KapellmeisterOperationThreadPoolExecutor kapellmeisterOperationThreadPoolExecutor;
+    private final KapellmeisterOperationExecutorsService operationExecutorsService;
+    /**
+     * Момент, после которого при захвате операций актуализируются статусы всех доступных групп, а не только изменившихся
+     */
+    private volatile Instant nextFullGroupScanInstant = Instant.MIN;
 
     @Lazy
     @Autowired
@@ -50,7 +59,9 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
     @Transactional
     public void saveResult(UUID operationId, OperationExecutionResult executionResult) {
         Operation operation = kapellmeisterStorageService.getOperation(operationId);
-        if (!operation.getType().isAsync() || operation.getStatus() != OperationStatus.WAIT_RESPONSE) {
+        if (operation.getType().isAsync() && operation.getStatus() == OperationStatus.WAIT_RESPONSE_IN_WORK) {
+            log.warn("Ответ по операции {} получен после истечения времени ожидания, результат {} не сохранен", operationId, executionResult);
+        } else if (!operation.getType().isAsync() || operation.getStatus() != OperationStatus.WAIT_RESPONSE) {
             throw new UnavailableUpdateOperationStateException("Не допускается обновлять состояние операции с типом " + operation.getType() + " и статусом " + operation.getStatus());
         } else {
             kapellmeisterOperationThreadPoolExecutor.saveResult(operationId, executionResult);
@@ -73,9 +84,8 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
 
     public Set<UUID> executeAvailableOperationGroupsSync(Instant jobDeadLine, Integer maxCountOfOperations) {
         Set<UUID> operations = self.executeAvailableOperationGroups(jobDeadLine, maxCountOfOperations);
-        kapellmeisterOperationThreadPoolExecutor.waitExecution();
-        self.executeAvailableOperationGroups(jobDeadLine, 0);
-        kapellmeisterOperationThreadPoolExecutor.waitExecution();
+        waitExecution(operations, jobDeadLine);
+        waitExecution(self.executeAvailableOperationGroups(jobDeadLine, 0), jobDeadLine);
 
         return operations;
     }
@@ -89,13 +99,22 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
     @Override
     public Set<UUID> executeAvailableOperationGroupsSync(Instant jobDeadLine) {
         Set<UUID> operations = self.executeAvailableOperationGroups(jobDeadLine);
-        kapellmeisterOperationThreadPoolExecutor.waitExecution();
-        self.executeAvailableOperationGroups(jobDeadLine, 0);
-        kapellmeisterOperationThreadPoolExecutor.waitExecution();
+        waitExecution(operations, jobDeadLine);
+        waitExecution(self.executeAvailableOperationGroups(jobDeadLine, 0), jobDeadLine);
 
         return operations;
     }
 
+    /**
+     * Ожидает завершения переданных в пул операций, но не дольше jobDeadLine
+     */
+    private void waitExecution(Set<UUID> operations, Instant jobDeadLine) {
+        Duration timeout = Duration.between(timeService.now(), jobDeadLine);
+        if (!kapellmeisterOperationThreadPoolExecutor.waitExecution(operations, timeout.isNegative() ? Duration.ZERO : timeout)) {
+            log.warn("Операции не завершены до {}", jobDeadLine);
+        }
+    }
+
     private void updateGroupStatus(OperationGroup operationGroup) {
         Set<OperationStatus> operationStatuses = operationGroup.getOperations().stream()
                 .map(Operation::getStatus)
@@ -138,8 +157,11 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
                             .collect(Collectors.toMap(Operation::getId, Operation::getStatus)));
         }
 
-        OperationGroup savedOperationGroup = kapellmeisterStorageService.update(operationGroup);
-        log.info("Статус группы {}  обновлен {}", savedOperationGroup.getId(), savedOperationGroup.getStatus());
+        if (kapellmeisterStorageService.update(operationGroup)) {
+            log.info("Статус группы {}  обновлен {}", operationGroup.getId(), operationGroup.getStatus());
+        } else {
+            log.warn("Статус группы {} изменен параллельно, обновление статуса {} пропущено", operationGroup.getId(), operationGroup.getStatus());
+        }
     }
 
     private void failGroup(OperationGroup operationGroup, Collection<Operation> criticFails) {
@@ -150,7 +172,6 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
         log.error("Группа операций {} помечена как проваленная, cause: провалены обязательные операции {}", operationGroup.getId(), cause);
         operationGroup.setComment(cause);
         trySetRetryGroup(operationGroup);
-        kapellmeisterStorageService.update(operationGroup);
     }
 
     private void trySetRetryGroup(OperationGroup operationGroup) {
@@ -168,6 +189,15 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
     }
 
     private Set<UUID> executeAllAvailableGroups(Instant jobDeadLine, Integer maxCountOfOperations) {
+        if (executingEnabled && properties.getActualStateCoalescingEnabled()) {
+            int rejectedCount = kapellmeisterStorageService.rejectSupersededActualStateOperations();
+            if (rejectedCount > 0) {
+                log.info("Отклонено {} неактуальных операций публикации актуального состояния", rejectedCount);
+            }
+        }
+        if (properties.getClaimEnabled()) {
+            return claimAndExecuteReadyOperations(jobDeadLine, maxCountOfOperations);
+        }
         Instant operationGroupCreateStartTime = timeService.calculateOperationExecutionBlockedForInstant();
         List<OperationGroup> availableGroups = kapellmeisterStorageService.getAvailableGroups(operationGroupCreateStartTime);
         availableGroups.forEach(this::updateGroupStatus);
@@ -184,6 +214,112 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
         return executedOperations;
     }
 
+    /**
+     * Выполняет операции, захватывая готовые к выполнению операции пачками, без загрузки всех доступных групп.
+     * Полностью загружаются только группы с изменившимися операциями (для актуализации статуса) и группы в процессе отката,
+     * все доступные группы загружаются не чаще параметра claimFullGroupScanInterval
+     */
+    private Set<UUID> claimAndExecuteReadyOperations(Instant jobDeadLine, Integer maxCountOfOperations) {
+        Set<UUID> executedOperations = new HashSet<>();
+        if (!executingEnabled) {
+            log.warn("Операции не могут быть выполнены, параметр executingEnabled = false");
+            return executedOperations;
+        }
+        Instant operationGroupCreateStartTime = timeService.calculateOperationExecutionBlockedForInstant();
+        resolveGroupsForStatusUpdate(operationGroupCreateStartTime).forEach(this::updateGroupStatus);
+        executedOperations.addAll(executeAvailableOperationGroups(kapellmeisterStorageService.getRollbackGroups(operationGroupCreateStartTime),
+                jobDeadLine,
+                maxCountOfOperations));
+
+        ClaimedBatchAccumulator batchAccumulator = new ClaimedBatchAccumulator(properties.getBatchMaxSize(),
+                Duration.ofMillis(properties.getBatchLingerTime()));
+        boolean poolIsAvailable = true;
+        while (poolIsAvailable && !jobIsInterrupted(jobDeadLine)
+               && !countOfOperationsIsExceeded(maxCountOfOperations, executedOperations.size() + batchAccumulator.size())) {
+            poolIsAvailable = submitClaimedBatches(batchAccumulator.drainExpired(timeService.now()), true, executedOperations);
+            int capacity = kapellmeisterOperationThreadPoolExecutor.getAvailableCapacity();
+            if (!poolIsAvailable || capacity == 0) {
+                log.warn("Пул потоков заполнен, захват операций остановлен");
+                poolIsAvailable = false;
+                break;
+            }
+            int remaining = resolveAvailableForExecutionOperationsCount(maxCountOfOperations, executedOperations.size() + batchAccumulator.size());
+            int limit = Math.min(capacity, UNLIMITED.equals(remaining) ? properties.getClaimBatchSize() : Math.min(properties.getClaimBatchSize(), remaining));
+            List<Operation> claimedOperations = kapellmeisterStorageService.claimReadyOperations(operationGroupCreateStartTime,
+                    timeService.calculateClaimLeaseExpiredInstant(),
+                    limit,
+                    kapellmeisterOperationThreadPoolExecutor.getSaturatedExecutorNames());
+            if (claimedOperations.isEmpty()) {
+                // готовых операций больше нет, неполные пачки выполняются в конце итерации без ожидания:
+                // итерация выполняется в транзакции, удерживать ее открытой ради накопления пачки нельзя
+                break;
+            }
+            List<UUID> unsubmittedOperationIds = new ArrayList<>();
+            for (Operation operation : claimedOperations) {
+                if (!poolIsAvailable) {
+                    unsubmittedOperationIds.add(operation.getId());
+                } else if (supportsBatch(operation)) {
+                    Optional<List<Operation>> batch = batchAccumulator.add(operation, timeService.now());
+                    if (batch.isPresent()) {
+                        poolIsAvailable = submitClaimedBatches(List.of(batch.get()), true, executedOperations);
+                    }
+                } else if (kapellmeisterOperationThreadPoolExecutor.submitClaimedOperation(operation)) {
+                    executedOperations.add(operation.getId());
+                } else if (kapellmeisterOperationThreadPoolExecutor.getAvailableCapacity() == 0) {
+                    log.warn("Пул потоков заполнен, захват операций остановлен");
+                    poolIsAvailable = false;
+                }
+            }
+            kapellmeisterStorageService.releaseClaims(unsubmittedOperationIds);
+        }
+        submitClaimedBatches(batchAccumulator.drainAll(), poolIsAvailable, executedOperations);
+        if (countOfOperationsIsExceeded(maxCountOfOperations, executedOperations.size())) {
+            log.warn("Достигнуто максимально допустимое количество операций " + executedOperations.size());
+        }
+        log.info("Обработаны все захваченные операции");
+        return executedOperations;
+    }
+
+    /**
+     * Изменившиеся группы определяются сравнением моментов обновления операций и группы, которые проставляются узлами приложения.
+     * Изменение, зафиксированное после чтения группы, или расхождение часов узлов могут скрыть изменение, поэтому периодически
+     * актуализируются все доступные группы
+     */
+    private List<OperationGroup> resolveGroupsForStatusUpdate(Instant operationGroupCreateStartTime) {
+        if (!timeService.isFullGroupScanRequired(nextFullGroupScanInstant)) {
+            return kapellmeisterStorageService.getChangedAvailableGroups(operationGroupCreateStartTime);
+        }
+        nextFullGroupScanInstant = timeService.calculateNextFullGroupScanInstant();
+        log.info("Актуализация статусов всех доступных групп операций");
+        return kapellmeisterStorageService.getAvailableGroups(operationGroupCreateStartTime);
+    }
+
+    private boolean supportsBatch(Operation operation) {
+        return operationExecutorsService.findExecutor(operation.getExecutorName())
+                .map(OperationExecutorDescriptor::supportsBatch)
+                .orElse(false);
+    }
+
+    /**
+     * Передает пачки захваченных операций в пул, после переполнения пула захват операций оставшихся пачек снимается
+     *
+     * @return true если пул доступен для новых операций
+     */
+    private boolean submitClaimedBatches(List<List<Operation>> batches, boolean poolIsAvailable, Set<UUID> executedOperations) {
+        List<UUID> unsubmittedOperationIds = new ArrayList<>();
+        for (List<Operation> batch : batches) {
+            if (!poolIsAvailable) {
+                batch.forEach(operation -> unsubmittedOperationIds.add(operation.getId()));
+            } else if (kapellmeisterOperationThreadPoolExecutor.submitClaimedBatch(batch)) {
+                batch.forEach(operation -> executedOperations.add(operation.getId()));
+            } else if (kapellmeisterOperationThreadPoolExecutor.getAvailableCapacity() == 0) {
+                poolIsAvailable = false;
+            }
+        }
+        kapellmeisterStorageService.releaseClaims(unsubmittedOperationIds);
+        return poolIsAvailable;
+    }
+
     private Set<UUID> executeAvailableOperationGroups(List<OperationGroup> availableGroups, Instant jobDeadLine, Integer maxCountOfOperations) {
         return availableGroups.stream()
                 .map(OperationGroup::getId)
@@ -231,8 +367,14 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
             log.warn("Группа операций не может быть выполнена, параметр executingEnabled = false");
             return executedOperations;
         }
-        boolean needProcessNextOperation;
-        do {
+        OperationGroup operationGroup = kapellmeisterStorageService.getGroup(operationGroupId);
+        if (!operationGroup.getStatus().isAvailableForProcess()) {
+            log.warn("Группа операций {} не доступна для выполнения, текущий статус {}", operationGroup.getId(), operationGroup.getStatus());
+            return executedOperations;
+        }
+        OperationGroupExecutionPlan executionPlan = createExecutionPlan(operationGroup);
+        boolean submittedSinceUpdate = false;
+        while (true) {
             if (jobIsInterrupted(jobDeadLine)) {
                 log.warn("Инициировано прерывание работы планировщика задач, выполнение операций из группы {} остановлено", operationGroupId);
                 return executedOperations;
@@ -241,18 +383,47 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
                 log.warn("Достигнуто максимально допустимое количество операций " + executedOperations.size());
                 return executedOperations;
             }
-            Optional<UUID> resolveOperationForExecuting = resolveOperationForExecuting(filter, operationGroupId);
-            needProcessNextOperation = resolveOperationForExecuting
-                    .filter(operationId -> !executedOperations.contains(operationId))
-                    .map(operationId -> {
-                        kapellmeisterOperationThreadPoolExecutor.submitOperation(operationId);
-                        executedOperations.add(operationId);
-                        return true;
-                    }).orElse(false);
-            if (resolveOperationForExecuting.isPresent()) {
-                filter = filter.and(operation -> !operation.getId().equals(resolveOperationForExecuting.get()));
+            if (kapellmeisterOperationThreadPoolExecutor.getAvailableCapacity() == 0) {
+                log.warn("Пул потоков заполнен, выполнение операций из группы {} остановлено", operationGroupId);
+                return executedOperations;
+            }
+            Set<String> saturatedExecutorNames = kapellmeisterOperationThreadPoolExecutor.getSaturatedExecutorNames();
+            Optional<Operation> readyOperation = pollReadyOperation(executionPlan,
+                    operation -> !executedOperations.contains(operation.getId())
+                            && !saturatedExecutorNames.contains(operation.getExecutorName())
+                            && filter.test(operation));
+            if (readyOperation.isPresent()) {
+                if (!kapellmeisterOperationThreadPoolExecutor.submitOperation(readyOperation.get())) {
+                    executionPlan.requeue(readyOperation.get());
+                    if (kapellmeisterOperationThreadPoolExecutor.getAvailableCapacity() == 0) {
+                        log.warn("Пул потоков заполнен, выполнение операций из группы {} остановлено", operationGroupId);
+                        return executedOperations;
+                    }
+                    if (!kapellmeisterOperationThreadPoolExecutor.getSaturatedExecutorNames().contains(readyOperation.get().getExecutorName())) {
+                        log.warn("Операция {} не принята пулом потоков, выполнение операций из группы {} остановлено", readyOperation.get().getId(), operationGroupId);
+                        return executedOperations;
+                    }
+                    // экзекутор заполнен, операция будет выбрана повторно после освобождения экзекутора
+                    continue;
+                }
+                executedOperations.add(readyOperation.get().getId());
+                submittedSinceUpdate = true;
+                continue;
             }
-        } while (needProcessNextOperation);
+            if (!submittedSinceUpdate) {
+                break;
+            }
+            submittedSinceUpdate = false;
+            OperationGroup actualOperationGroup = kapellmeisterStorageService.getGroup(operationGroupId);
+            if (actualOperationGroup.getStatus() != executionPlan.getGroupStatus()) {
+                log.info("Статус группы {} изменился {} -> {}, выполнение операций остановлено", operationGroupId, executionPlan.getGroupStatus(), actualOperationGroup.getStatus());
+                break;
+            }
+            if (!executionPlan.update(actualOperationGroup.getOperations())) {
+                break;
+            }
+            resolveLaneBlockedOperations(executionPlan);
+        }
         log.info("Обработаны все доступные операции из группы {}", operationGroupId);
         return executedOperations;
     }
@@ -265,25 +436,40 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
             log.warn("Группа операций {} не доступна для выполнения, текущий статус {}", operationGroup.getId(), operationGroup.getStatus());
             return Optional.empty();
         }
+        return pollReadyOperation(createExecutionPlan(operationGroup), operationFilter::test).map(Operation::getId);
+    }
+
+    private OperationGroupExecutionPlan createExecutionPlan(OperationGroup operationGroup) {
         log.info("Группа {} содержит операции: {}", operationGroup.getId(), operationGroup.getOperations().stream().map(Operation::getId).collect(Collectors.toList()));
+        kapellmeisterStorageService.setPreviousOperations(operationGroup);
+        OperationGroupExecutionPlan executionPlan = new OperationGroupExecutionPlan(operationGroup);
+        resolveLaneBlockedOperations(executionPlan);
+        return executionPlan;
+    }
 
-        List<Operation> criticalOperations = operationGroup.getOperations().stream()
-                .filter(operation -> operation.getImportanceType() == OperationImportanceType.CRITICAL)
-                .filter(operation -> !OperationStatus.COMPLETED.contains(operation.getStatus()) || operationGroup.getStatus() == OperationGroupStatus.ROLLBACK_IN_PROGRESS)
-                .map(kapellmeisterStorageService::setPreviousOperation)
-                .collect(Collectors.toList());
+    /**
+     * Операции {@link OperationType#PUBLISH_DIFF_LOG} по одной сущности выполняются строго в порядке создания, в том числе из разных групп.
+     * Заблокированные более ранними операциями полосы определяются одним запросом для всех ожидающих выполнения операций группы
+     */
+    private void resolveLaneBlockedOperations(OperationGroupExecutionPlan executionPlan) {
+        Set<UUID> laneOperationIds = executionPlan.getOperations().stream()
+                .filter(operation -> operation.getType() == OperationType.PUBLISH_DIFF_LOG)
+                .filter(operation -> operation.getRelatedEntityId() != null)
+                .filter(operation -> OperationStatus.IN_PROGRESS.contains(operation.getStatus()))
+                .map(Operation::getId)
+                .collect(Collectors.toSet());
+        executionPlan.setLaneBlockedOperationIds(laneOperationIds.isEmpty()
+                ? Set.of()
+                : kapellmeisterStorageService.findLaneBlockedOperationIds(laneOperationIds));
+    }
 
-        Optional<Operation> readyOperation = Optional.of(criticalOperations)
-                .filter(operationEntities -> !operationEntities.isEmpty())
-                .orElse(operationGroup.getOperations()).stream()
-                .filter(operationFilter)
-                .filter(this::isReady)
-                .min(Comparator.comparingInt(Operation::getPriority));
+    private Optional<Operation> pollReadyOperation(OperationGroupExecutionPlan executionPlan, Predicate<Operation> operationFilter) {
+        Optional<Operation> readyOperation = executionPlan.poll(operation -> operationFilter.test(operation) && isReady(operation, executionPlan));
         readyOperation.ifPresentOrElse(
-                operation -> log.info("Из группы {} выбрана операция для выполнения {}", operationGroup.getId(), operation),
-                () -> log.info("В группе {} не найдено доступных для выполнения операций", operationGroup.getId())
+                operation -> log.info("Из группы {} выбрана операция для выполнения {}", operation.getGroupId(), operation),
+                () -> log.info("В плане выполнения группы не найдено доступных для выполнения операций")
         );
-        return readyOperation.map(Operation::getId);
+        return readyOperation;
     }
 
     @Override
@@ -293,13 +479,13 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
                 .collect(Collectors.toSet());
     }
 
-    private boolean isReady(Operation operation) {
+    private boolean isReady(Operation operation, OperationGroupExecutionPlan executionPlan) {
         return ((isFirstExecution(operation)
                  || isRetryAvailable(operation)
                  || isVerificationAvailable(operation)
                  || isAsyncRetryAvailable(operation)
-                ) && allPreviousOperationsCompleted(operation))
-               || (isRollbackAvailable(operation) && isNextOperationsRollback(operation));
+                ) && executionPlan.allPreviousOperationsCompleted(operation) && !executionPlan.isLaneBlocked(operation))
+               || (isRollbackAvailable(operation) && executionPlan.allNextOperationsRolledBack(operation));
     }
 
     private boolean isFirstExecution(Operation operation) {
@@ -330,15 +516,4 @@ public class KapellmeisterEngineImpl implements KapellmeisterEngine {
         return (operation.getStatus().isFailed() || operation.getStatus() == OperationStatus.SUCCESS)
                && operation.getRollbackType() != RollbackType.UNSUPPORTED;
     }
-
-    private boolean isNextOperationsRollback(Operation operation) {
-        return kapellmeisterStorageService.findNextOperations(operation).stream()
-                .allMatch(nextOperation -> nextOperation.getStatus() == OperationStatus.ROLLBACK_SUCCESS
-                                           || nextOperation.getStatus() == OperationStatus.CREATED);
-    }
-
-    private boolean allPreviousOperationsCompleted(Operation operation) {
-        return operation.getPrevious().stream()
-                .allMatch(previousOperation -> previousOperation.getStatus().isCompleted() || previousOperation.getStatus().isSuspended());
-    }
 }
@@ -9,8 +9,12 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.mlc.common.exception.InternalServerException;
 import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -36,9 +40,30 @@ public class KapellmeisterGroupContextHolder {
         private final String methodName;
         @Setter
         private UUID currentExecutionOperationId;
+        /**
+         * Выполняется пачка операций {@link ru.mlc.kapellmeister.api.BatchOperationExecutor}: вложенную группу нельзя связать
+         * с одной родительской операцией, поэтому добавление операций в очередь запрещено
+         */
+        @Setter
+        private boolean batchExecution;
+        /**
+         * Группа операций текущей транзакции, загружается (или создается) один раз при первом обращении
+         */
+        @Setter
+        private OperationGroup operationGroup;
+        /**
+         * Поля группы изменены и должны быть сохранены перед коммитом
+         */
+        private final AtomicBoolean operationGroupChanged = new AtomicBoolean(false);
+        private final AtomicBoolean beforeCommitRegistered = new AtomicBoolean(false);
+        /**
+         * Операции, уже прошедшие проверку порядка выполнения (см. {@link OperationValidator#validateNewOperation})
+         */
+        private final Set<UUID> validatedOperationIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
         private final AtomicBoolean executionAfterCommitWasTriggerred = new AtomicBoolean(false);
         private final Set<UUID> operationsForExecuteAfterCommit = Collections.newSetFromMap(new ConcurrentHashMap<>());
         private final OptimizedCache optimizedCache = new OptimizedCache();
+        private final OperationBuffer operationBuffer = new OperationBuffer();
 
         public Optional<UUID> getCurrentExecutionOperationId() {
             return Optional.ofNullable(currentExecutionOperationId);
@@ -69,5 +94,32 @@ public class KapellmeisterGroupContextHolder {
                 String params;
             }
         }
+
+        /**
+         * Операции, добавленные в очередь, но еще не сохраненные в БД
+         */
+        public static class OperationBuffer {
+
+            private final Map<UUID, Operation> operations = Collections.synchronizedMap(new LinkedHashMap<>());
+
+            public void add(Operation operation) {
+                operations.put(operation.getId(), operation);
+            }
+
+            public Optional<Operation> find(UUID operationId) {
+                return Optional.ofNullable(operations.get(operationId));
+            }
+
+            /**
+             * Забирает все накопленные операции в порядке добавления
+             */
+            public List<Operation> drain() {
+                synchronized (operations) {
+                    List<Operation> drained = new ArrayList<>(operations.values());
+                    operations.clear();
+                    return drained;
+                }
+            }
+        }
     }
 }
@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.mlc.kapellmeister.api.Kapellmeister;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.api.OperationBuilder;
@@ -19,11 +21,15 @@ import ru.mlc.kapellmeister.constants.OperationPriority;
 import ru.mlc.kapellmeister.constants.OperationStatus;
 import ru.mlc.kapellmeister.db.Operation;
 import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.exceptions.KapellmeisterUnsupportedOperationException;
 import ru.mlc.kapellmeister.exceptions.OperationConfigValidationException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
@@ -43,6 +49,9 @@ public class KapellmeisterImpl implements Kapellmeister {
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
     public <T> OperationState addToQueue(OperationConfig<T> config) {
+        if (getContext().isBatchExecution()) {
+            throw new KapellmeisterUnsupportedOperationException("Добавление операций в очередь при выполнении пачки операций не поддерживается");
+        }
         operationValidator.validate(config);
         String serializedParams = config.getExecutor().serializeParams(config.getParams());
         if (properties.getOptimizationEnabled() && config.getOptimized()) {
@@ -67,7 +76,10 @@ public class KapellmeisterImpl implements Kapellmeister {
 
     private <T> Operation newOperation(OperationConfig<T> config, String serializedParams) {
         OperationGroup currentOperationGroup = getCurrentOperationGroup();
-        List<Operation> previousOperations = kapellmeisterStorageService.findAllRequired(config.getPreviousOperationIds());
+        boolean buffered = properties.getBufferedEnqueueEnabled();
+        List<Operation> previousOperations = buffered
+                ? findPreviousOperations(config.getPreviousOperationIds())
+                : kapellmeisterStorageService.findAllRequired(config.getPreviousOperationIds());
         Operation operation = Operation.builder()
                 .groupId(currentOperationGroup.getId())
                 .executorName(config.getExecutor().getName())
@@ -86,10 +98,17 @@ public class KapellmeisterImpl implements Kapellmeister {
                 .waitResponseTimeout(config.getWaitResponseTimeout())
                 .status(OperationStatus.CREATED)
                 .build();
-        operation = kapellmeisterStorageService.save(operation);
+        if (buffered) {
+            operation.setId(UUID.randomUUID());
+            getContext().getOperationBuffer().add(operation);
+            currentOperationGroup.getOperations().add(operation);
+            registerBeforeCommit();
+        } else {
+            operation = kapellmeisterStorageService.save(operation);
+            currentOperationGroup.getOperations().add(operation);
+            operationValidator.validateNewOperation(operation, getContext().getValidatedOperationIds());
+        }
         UUID operationId = operation.getId();
-        currentOperationGroup.getOperations().add(operation);
-        operationValidator.validateOrder(currentOperationGroup);
         if (Boolean.TRUE.equals(config.getExecuteAfterCommit())) {
             getContext().getOperationsForExecuteAfterCommit().add(operationId);
             triggerDeferredExecutor();
@@ -98,27 +117,86 @@ public class KapellmeisterImpl implements Kapellmeister {
         return operation;
     }
 
+    /**
+     * Предшествующие операции ищутся сначала среди еще не сохраненных операций транзакции, остальные - в БД
+     */
+    private List<Operation> findPreviousOperations(Set<UUID> previousOperationIds) {
+        KapellmeisterGroupContextHolder.Context.OperationBuffer operationBuffer = getContext().getOperationBuffer();
+        List<Operation> previousOperations = new ArrayList<>();
+        Set<UUID> persistedOperationIds = new HashSet<>();
+        previousOperationIds.forEach(operationId -> operationBuffer.find(operationId)
+                .ifPresentOrElse(previousOperations::add, () -> persistedOperationIds.add(operationId)));
+        if (!persistedOperationIds.isEmpty()) {
+            previousOperations.addAll(kapellmeisterStorageService.findAllRequired(persistedOperationIds));
+        }
+        return previousOperations;
+    }
+
+    /**
+     * Регистрирует (один раз на транзакцию) сохранение накопленных операций и измененных полей группы перед коммитом
+     */
+    private void registerBeforeCommit() {
+        if (getContext().getBeforeCommitRegistered().compareAndSet(false, true)) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    flushBufferedOperations();
+                    flushOperationGroup();
+                }
+            });
+        }
+    }
+
+    private void flushOperationGroup() {
+        KapellmeisterGroupContextHolder.Context context = getContext();
+        if (context.getOperationGroupChanged().compareAndSet(true, false) && !kapellmeisterStorageService.update(context.getOperationGroup())) {
+            // статус группы изменен шедуллером, сохраняется только описание
+            OperationGroup actualGroup = kapellmeisterStorageService.getGroup(context.getOperationGroup().getId());
+            actualGroup.setDescription(context.getOperationGroup().getDescription());
+            kapellmeisterStorageService.update(actualGroup);
+        }
+    }
+
+    /**
+     * Сохраняет накопленные в транзакции операции пакетной вставкой и проверяет порядок операций группы
+     */
+    private void flushBufferedOperations() {
+        if (!properties.getBufferedEnqueueEnabled() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        List<Operation> operations = getContext().getOperationBuffer().drain();
+        if (operations.isEmpty()) {
+            return;
+        }
+        kapellmeisterStorageService.saveAll(operations);
+        operationValidator.validateOrder(getCurrentOperationGroup());
+        log.info("В очередь выполнения сохранено {} операций", operations.size());
+    }
+
     /**
      * Инициирует выполнение операций после коммита транзакции
      */
     private void triggerDeferredExecutor() {
-        synchronized (getContext().getTransactionId()) {
-            if (!getContext().getExecutionAfterCommitWasTriggerred().get()) {
-                KapellmeisterGroupContextHolder.Context context = getContext();
-                context.getExecutionAfterCommitWasTriggerred().set(true);
-                kapellmeisterAfterCommitService.some(context.getTransactionId(), context.getOperationsForExecuteAfterCommit());
-            }
+        KapellmeisterGroupContextHolder.Context context = getContext();
+        if (context.getExecutionAfterCommitWasTriggerred().compareAndSet(false, true)) {
+            kapellmeisterAfterCommitService.some(context.getTransactionId(), context.getOperationsForExecuteAfterCommit());
         }
     }
 
+    /**
+     * Группа операций текущей транзакции, загруженная (или созданная) при первом обращении и закэшированная в контексте транзакции
+     */
     private OperationGroup getCurrentOperationGroup() {
         KapellmeisterGroupContextHolder.Context context = getContext();
-        return kapellmeisterStorageService.findGroup(context.getTransactionId())
-                .orElseGet(() -> kapellmeisterStorageService.createGroup(
-                        context.getTransactionId(),
-                        context.getMethodName(),
-                        context.getCurrentExecutionOperationId().orElse(null))
-                );
+        if (context.getOperationGroup() == null) {
+            context.setOperationGroup(kapellmeisterStorageService.findGroup(context.getTransactionId())
+                    .orElseGet(() -> kapellmeisterStorageService.createGroup(
+                            context.getTransactionId(),
+                            context.getMethodName(),
+                            context.getCurrentExecutionOperationId().orElse(null))
+                    ));
+        }
+        return context.getOperationGroup();
     }
 
     private KapellmeisterGroupContextHolder.Context getContext() {
@@ -138,15 +216,19 @@ public class KapellmeisterImpl implements Kapellmeister {
         OperationGroup group = getCurrentOperationGroup();
         String description = group.getDescription();
         group.setDescription(String.join(";\n", description, message));
+        getContext().getOperationGroupChanged().set(true);
+        registerBeforeCommit();
     }
 
     @Override
     public Collection<? extends OperationState> findOperationInCurrentGroup(OperationExecutor<?> executor) {
+        flushBufferedOperations();
         return kapellmeisterStorageService.findOperations(executor.getName(), getCurrentOperationGroup().getId());
     }
 
     @Override
     public Collection<? extends OperationState> findOperationInGroup(OperationExecutor<?> executor, UUID groupId) {
+        flushBufferedOperations();
         return kapellmeisterStorageService.findOperations(executor.getName(), groupId);
     }
 
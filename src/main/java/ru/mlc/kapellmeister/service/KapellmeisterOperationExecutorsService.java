@@ -8,8 +8,10 @@ import ru.mlc.common.exception.ValidationException;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.api.OperationExecutor;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -21,6 +23,14 @@ public class KapellmeisterOperationExecutorsService {
     private final List<? extends OperationExecutor<?>> executors;
     private final boolean executingEnabled;
     private final KapellmeisterStorageService kapellmeisterStorageService;
+    /**
+     * Лимиты одновременно выполняемых операций из настроек, ключ - имя экзекутора
+     */
+    private final Map<String, Integer> executorsMaxConcurrency;
+    /**
+     * Неизменяемый индекс экзекуторов по имени, строится при старте
+     */
+    private Map<String, OperationExecutorDescriptor<?>> executorsByName = Map.of();
 
     @PostConstruct
     private void validateConfiguration() {
@@ -38,6 +48,10 @@ public class KapellmeisterOperationExecutorsService {
                     .collect(Collectors.joining(";\n"))
             );
         }
+        Map<String, OperationExecutorDescriptor<?>> descriptors = new HashMap<>();
+        executors.forEach(executor -> descriptors.put(executor.getName(),
+                OperationExecutorDescriptor.of(executor, executorsMaxConcurrency.get(executor.getName()))));
+        executorsByName = Map.copyOf(descriptors);
         Set<String> availableExecutorNames = groupedExecutors.keySet();
         Set<String> unavailableExecutorNames = kapellmeisterStorageService.getExecutorNamesWithUncompletedOperations().stream()
                 .filter(executorName -> !availableExecutorNames.contains(executorName))
@@ -50,4 +64,18 @@ public class KapellmeisterOperationExecutorsService {
         }
     }
 
+    public Optional<OperationExecutorDescriptor<?>> findExecutor(String executorName) {
+        return Optional.ofNullable(executorsByName.get(executorName));
+    }
+
+    /**
+     * Лимиты одновременно выполняемых операций экзекуторов, для которых они заданы
+     */
+    public Map<String, Integer> getExecutorsMaxConcurrency() {
+        Map<String, Integer> limits = new HashMap<>();
+        executorsByName.forEach((name, descriptor) -> descriptor.getMaxConcurrency()
+                .ifPresent(maxConcurrency -> limits.put(name, maxConcurrency)));
+        return limits;
+    }
+
 }
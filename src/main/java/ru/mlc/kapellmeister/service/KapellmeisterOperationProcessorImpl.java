@@ -4,10 +4,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.transaction.annotation.Transactional;
+import ru.mlc.kapellmeister.api.BatchOperationExecutor;
 import ru.mlc.kapellmeister.api.KapellmeisterOperationProcessor;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.api.OperationExecutor;
-import ru.mlc.kapellmeister.api.VerifiableOperationExecutor;
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
 import ru.mlc.kapellmeister.constants.OperationFailReason;
 import ru.mlc.kapellmeister.constants.OperationImportanceType;
@@ -16,10 +16,18 @@ import ru.mlc.kapellmeister.db.Operation;
 import ru.mlc.kapellmeister.exceptions.ExecutorNotFoundException;
 import ru.mlc.kapellmeister.exceptions.KapellmeisterUnsupportedOperationException;
 import ru.mlc.kapellmeister.exceptions.UnavailableUpdateOperationStateException;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics.ExecutorCall;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static ru.mlc.kapellmeister.constants.OperationFailReason.EXECUTION_ERROR;
 import static ru.mlc.kapellmeister.constants.OperationFailReason.EXECUTOR_NOT_SUPPORTS_VERIFICATION;
@@ -40,6 +48,8 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
     private final KapellmeisterStorageService storageService;
     private final KapellmeisterTimeSynchronizationService timeService;
     private final KapellmeisterGroupContextHolder kapellmeisterGroupContextHolder;
+    private final KapellmeisterAfterCommitService kapellmeisterAfterCommitService;
+    private final KapellmeisterMetrics kapellmeisterMetrics;
 
     @Transactional
     public OperationExecutionResult processOperation(UUID operationId) {
@@ -60,7 +70,7 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
         if (!operation.getType().isAsync() || operation.getStatus() != OperationStatus.WAIT_RESPONSE) {
             throw new UnavailableUpdateOperationStateException("Не допускается обновлять состояние операции с типом " + operation.getType() + " и статусом " + operation.getStatus());
         } else {
-            OperationExecutor<?> executor = getExecutor(operation.getExecutorName());
+            OperationExecutor<?> executor = getExecutor(operation.getExecutorName()).getExecutor();
             if (isWaitingResponseTimeoutReached(operation)) {
                 failOperationExecutionAttempt(operation, executor, OperationFailReason.RESPONSE_WAIT_TIMEOUT_REACHED, null);
             } else if (executionResult == OperationExecutionResult.SUCCESS) {
@@ -72,11 +82,127 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
             } else {
                 throw new KapellmeisterUnsupportedOperationException("Unsupported " + OperationExecutionResult.class.getSimpleName() + " " + executionResult);
             }
+            storageService.update(operation);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void processOperations(List<UUID> operationIds) {
+        storageService.findAllRequired(new LinkedHashSet<>(operationIds)).stream()
+                .collect(Collectors.groupingBy(Operation::getExecutorName, LinkedHashMap::new, Collectors.toList()))
+                .forEach((executorName, operations) -> operationExecutorsService.findExecutor(executorName)
+                        .ifPresentOrElse(descriptor -> processBatch(descriptor, operations),
+                                () -> operations.forEach(operation ->
+                                        handleExecutionException(operation.getId(), new ExecutorNotFoundException(executorName)))));
+    }
+
+    /**
+     * Операции, готовые к очередной попытке выполнения, выполняются одним вызовом {@link BatchOperationExecutor#executeBatch},
+     * их состояния сохраняются одним пакетным запросом. Остальные операции (откат, проверка, истекший срок) выполняются по одной
+     */
+    private <T> void processBatch(OperationExecutorDescriptor<T> descriptor, List<Operation> operations) {
+        Optional<BatchOperationExecutor<T>> batchExecutor = descriptor.getBatchExecutor();
+        List<Operation> batch = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (batchExecutor.isPresent() && isBatchable(operation)) {
+                batch.add(operation);
+            } else {
+                processSingle(operation);
+            }
+        }
+        batchExecutor.filter(executor -> !batch.isEmpty())
+                .ifPresent(executor -> executeBatch(executor, descriptor, batch));
+    }
+
+    private boolean isBatchable(Operation operation) {
+        return operation.getStatus() == OperationStatus.IN_WORK
+               && (operation.getDeadlineTimestamp() == null || !timeService.isOperationDeadlineReached(operation.getDeadlineTimestamp()))
+               && operation.getAttemptCount() < operation.getMaxAttemptCount();
+    }
+
+    private void processSingle(Operation operation) {
+        try {
+            kapellmeisterGroupContextHolder.getContext().setCurrentExecutionOperationId(operation.getId());
+            processExecutorTask(operation);
+        } catch (Exception e) {
+            handleExecutionException(operation.getId(), e);
+        }
+    }
+
+    private <T> void executeBatch(BatchOperationExecutor<T> executor, OperationExecutorDescriptor<T> descriptor, List<Operation> operations) {
+        List<Operation> processed = new ArrayList<>();
+        List<Operation> executed = new ArrayList<>();
+        List<T> params = new ArrayList<>();
+        for (Operation operation : operations) {
+            try {
+                operation.setAttemptCount(operation.getAttemptCount() + 1);
+                operation.setLastExecutionTimeStamp(timeService.now());
+                T param = executor.deserializeParams(operation.getParams());
+                OperationExecutionResult preconditionResult = executor.checkPrecondition(param).orElse(OperationExecutionResult.ATTEMPT_FAILED);
+                if (preconditionResult == OperationExecutionResult.ATTEMPT_FAILED) {
+                    executed.add(operation);
+                    params.add(param);
+                } else {
+                    log.warn("Операция {} ({}) ранее выполнена с результатом {}", operation.getId(), operation.getDescription(), preconditionResult);
+                    applyAttemptResult(operation, descriptor, preconditionResult);
+                    processed.add(operation);
+                }
+            } catch (Exception e) {
+                failBatchOperation(executor, operation, e, processed);
+            }
+        }
+        if (!params.isEmpty()) {
+            log.info("Инициирован вызов executor {} для пачки из {} операций", executor.getName(), params.size());
+            Map<Integer, OperationExecutionResult> results;
+            KapellmeisterGroupContextHolder.Context context = kapellmeisterGroupContextHolder.getContext();
+            context.setCurrentExecutionOperationId(null);
+            context.setBatchExecution(true);
+            try {
+                results = kapellmeisterMetrics.recordExecutorCall(executor.getName(), ExecutorCall.EXECUTE_BATCH, () -> executor.executeBatch(params));
+            } catch (Exception e) {
+                executed.forEach(operation -> failBatchOperation(executor, operation, e, processed));
+                results = null;
+            } finally {
+                context.setBatchExecution(false);
+            }
+            for (int i = 0; results != null && i < executed.size(); i++) {
+                Operation operation = executed.get(i);
+                OperationExecutionResult executionResult = results.getOrDefault(i, OperationExecutionResult.ATTEMPT_FAILED);
+                log.info("Операция {} ({}) выполнена в пачке с результатом {}", operation.getId(), operation.getDescription(), executionResult);
+                try {
+                    applyAttemptResult(operation, descriptor, executionResult);
+                    processed.add(operation);
+                } catch (Exception e) {
+                    handleExecutionException(operation.getId(), e);
+                }
+            }
+        }
+        storageService.updateAll(processed);
+    }
+
+    /**
+     * Проваливает попытку операции пачки по уже измененному в памяти состоянию (счетчик попыток, момент выполнения),
+     * состояние сохраняется вместе с остальными операциями пачки
+     */
+    private void failBatchOperation(OperationExecutor<?> executor, Operation operation, Exception operationExecutionException,
+                                    List<Operation> processed) {
+        log.warn("При выполнении операции {} произошла ошибка. Попытка провалена.", operation.getId(), operationExecutionException);
+        try {
+            if (executor.canRetry(operationExecutionException)) {
+                failOperationExecutionAttempt(operation, executor, EXECUTION_ERROR, operationExecutionException);
+            } else {
+                failOperation(operation, EXECUTION_ERROR, operationExecutionException);
+            }
+            processed.add(operation);
+        } catch (Exception e) {
+            handleExecutionException(operation.getId(), e);
         }
     }
 
     private OperationExecutionResult processExecutorTask(Operation operation) {
-        OperationExecutor<?> executor = getExecutor(operation.getExecutorName());
+        OperationExecutorDescriptor<?> descriptor = getExecutor(operation.getExecutorName());
+        OperationExecutor<?> executor = descriptor.getExecutor();
         log.info("Операция {} взята в работу", operation);
         if (operation.getStatus() == ROLLBACK_IN_WORK) {
             processRollback(operation, executor);
@@ -84,16 +210,16 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
             failOperation(operation, OperationFailReason.DEADLINE_REACHED, null);
         } else if (isWaitingResponseTimeoutReached(operation)) {
             failOperationExecutionAttempt(operation, executor, OperationFailReason.RESPONSE_WAIT_TIMEOUT_REACHED, null);
-            storageService.update(operation);
         } else if (operation.getPrevious().stream().anyMatch(previous -> previous.getStatus().isSuspended())) {
             failOperation(operation, OperationFailReason.PREVIOUS_RESERVED, null);
         } else {
             if (operation.getStatus().isVerifiable()) {
-                processVerification(operation, executor);
+                processVerification(operation, descriptor);
             } else {
-                processAttempt(operation, executor);
+                processAttempt(operation, descriptor);
             }
         }
+        storageService.update(operation);
 
         log.info("Результат выполнения операции {} : {}", operation.getId(), operation.getExecutionResult());
         return operation.getExecutionResult();
@@ -101,7 +227,7 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
 
     private <T> OperationExecutionResult processRollback(Operation operation, OperationExecutor<T> executor) {
         T params = executor.deserializeParams(operation.getParams());
-        OperationExecutionResult result = executor.rollback(params);
+        OperationExecutionResult result = kapellmeisterMetrics.recordExecutorCall(executor.getName(), ExecutorCall.ROLLBACK, () -> executor.rollback(params));
         log.info("Операция отката {} ({}) выполнена штатно с результатом {}",
                 operation.getId(), operation.getDescription(), result);
         if (result == OperationExecutionResult.ROLLBACK_FAIL) {
@@ -118,7 +244,8 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
         if (operation.getStatus().isExecutable()) {
             operation.setAttemptCount(operation.getAttemptCount() + 1);
         }
-        findExecutor(operation.getExecutorName())
+        operationExecutorsService.findExecutor(operation.getExecutorName())
+                .map(OperationExecutorDescriptor::getExecutor)
                 .ifPresentOrElse(executor -> {
                     OperationFailReason reason = operation.getStatus().isExecutable() ? EXECUTION_ERROR : VERIFICATION_ERROR;
                     if (executor.canRetry(operationExecutionException)) {
@@ -127,14 +254,15 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
                         failOperation(operation, reason, operationExecutionException);
                     }
                 }, () -> failOperation(operation, OperationFailReason.EXECUTOR_NOT_FOUND, operationExecutionException));
+        storageService.update(operation);
     }
 
-    private <T> void processVerification(Operation operation, OperationExecutor<T> executor) {
+    private <T> void processVerification(Operation operation, OperationExecutorDescriptor<T> descriptor) {
         log.info("Начата проверка результата выполнения задачи {}", operation.getId());
-        resolveVerifier(executor)
+        descriptor.getVerifier()
                 .ifPresentOrElse(verifier -> {
                             T params = verifier.deserializeParams(operation.getParams());
-                            OperationExecutionResult result = verifier.verify(params);
+                            OperationExecutionResult result = kapellmeisterMetrics.recordExecutorCall(verifier.getName(), ExecutorCall.VERIFY, () -> verifier.verify(params));
                             log.info("Проверка выполнения задачи {} произведена штатно с результатом {}", operation.getId(), result);
                             if (result == OperationExecutionResult.SUCCESS) {
                                 markAsVerificationSuccess(operation);
@@ -149,7 +277,8 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
                 );
     }
 
-    private <T> void processAttempt(Operation operation, OperationExecutor<T> executor) {
+    private <T> void processAttempt(Operation operation, OperationExecutorDescriptor<T> descriptor) {
+        OperationExecutor<T> executor = descriptor.getExecutor();
         log.info("Инициировано выполнение работы по задаче {}", operation.getId());
         if (operation.getAttemptCount() < operation.getMaxAttemptCount()) {
             operation.setAttemptCount(operation.getAttemptCount() + 1);
@@ -157,33 +286,29 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
             OperationExecutionResult executionResult = execute(executor, operation);
             log.info("Операция {} ({}) выполнена штатно с результатом {}",
                     operation.getId(), operation.getDescription(), executionResult);
-            if (executionResult == OperationExecutionResult.SUCCESS) {
-                if (operation.getType().isAsync()) {
-                    markAsWaitingResponse(operation);
-                } else {
-                    resolveVerifier(executor)
-                            .ifPresentOrElse(
-                                    verifier -> markAsOnVerification(operation),
-                                    () -> markAsExecuted(operation)
-                            );
-                }
-            } else if (executionResult == OperationExecutionResult.ATTEMPT_FAILED) {
-                failOperationExecutionAttempt(operation, executor, OperationFailReason.FAILED_EXECUTION, null);
-            } else if (executionResult == OperationExecutionResult.FAIL) {
-                failOperation(operation, OperationFailReason.FAILED_EXECUTION, null);
-            } else {
-                throw new KapellmeisterUnsupportedOperationException("Unsupported " + OperationExecutionResult.class.getSimpleName() + " " + executionResult);
-            }
+            applyAttemptResult(operation, descriptor, executionResult);
         } else {
             processAttemptIsOver(operation, OperationFailReason.FAILED_EXECUTION, null);
         }
     }
 
-    private <T> Optional<VerifiableOperationExecutor<T>> resolveVerifier(OperationExecutor<T> executor) {
-        if (executor instanceof VerifiableOperationExecutor) {
-            return Optional.of((VerifiableOperationExecutor<T>) executor);
+    private <T> void applyAttemptResult(Operation operation, OperationExecutorDescriptor<T> descriptor, OperationExecutionResult executionResult) {
+        if (executionResult == OperationExecutionResult.SUCCESS) {
+            if (operation.getType().isAsync()) {
+                markAsWaitingResponse(operation);
+            } else {
+                descriptor.getVerifier()
+                        .ifPresentOrElse(
+                                verifier -> markAsOnVerification(operation),
+                                () -> markAsExecuted(operation)
+                        );
+            }
+        } else if (executionResult == OperationExecutionResult.ATTEMPT_FAILED) {
+            failOperationExecutionAttempt(operation, descriptor.getExecutor(), OperationFailReason.FAILED_EXECUTION, null);
+        } else if (executionResult == OperationExecutionResult.FAIL) {
+            failOperation(operation, OperationFailReason.FAILED_EXECUTION, null);
         } else {
-            return Optional.empty();
+            throw new KapellmeisterUnsupportedOperationException("Unsupported " + OperationExecutionResult.class.getSimpleName() + " " + executionResult);
         }
     }
 
@@ -198,7 +323,7 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
             return preconditionResult;
         } else if (preconditionResult == OperationExecutionResult.ATTEMPT_FAILED) {
             log.info("Все предусловия по задаче {} проверены, инициируется вызов executor {} с параметрами {}", operation.getId(), executor.getName(), params);
-            return executor.execute(params);
+            return kapellmeisterMetrics.recordExecutorCall(executor.getName(), ExecutorCall.EXECUTE, () -> executor.execute(params));
         } else {
             throw new KapellmeisterUnsupportedOperationException("Unsupported " + OperationExecutionResult.class.getSimpleName() + " " + preconditionResult);
         }
@@ -220,7 +345,6 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
             changeOperationStatus(operation, OperationStatus.CAN_RETRY);
             operation.setExecutionResult(OperationExecutionResult.ATTEMPT_FAILED);
             operation.setComment(getFailComment("Провалена попытка выполнения операции.", reason, exception));
-            storageService.update(operation);
         }
     }
 
@@ -228,12 +352,15 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
         log.info("Работа по задаче {} выполнена, инициирована отложенная проверки результат", operation.getId());
         operation.setExecutionResult(OperationExecutionResult.SUCCESS);
         changeOperationStatus(operation, VERIFICATION);
-        storageService.update(operation);
     }
 
+    /**
+     * Операция в статусе {@link OperationStatus#WAIT_RESPONSE_IN_WORK} захвачена планировщиком по истечении времени ожидания ответа
+     */
     private boolean isWaitingResponseTimeoutReached(Operation operation) {
-        return operation.getStatus().isWaitResponse()
-               && timeService.isResponseWaitingExpired(operation.getLastExecutionTimeStamp(), operation.getWaitResponseTimeout());
+        return operation.getStatus() == OperationStatus.WAIT_RESPONSE_IN_WORK
+               || operation.getStatus().isWaitResponse()
+                  && timeService.isResponseWaitingExpired(operation.getLastExecutionTimeStamp(), operation.getWaitResponseTimeout());
     }
 
     private void processAttemptIsOver(Operation operation, OperationFailReason reason, @Nullable Exception exception) {
@@ -242,19 +369,27 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
 
     private void markAsVerificationSuccess(Operation operation) {
         changeOperationStatus(operation, SUCCESS);
-        storageService.update(operation);
+        triggerNextOperations(operation);
     }
 
     private void markAsExecuted(Operation operation) {
         operation.setExecutionResult(OperationExecutionResult.SUCCESS);
         changeOperationStatus(operation, SUCCESS);
-        storageService.update(operation);
+        triggerNextOperations(operation);
+    }
+
+    private void triggerNextOperations(Operation operation) {
+        if (!kapellmeisterAfterCommitService.isCompletionTriggerEnabled()) {
+            return;
+        }
+        storageService.findNextOperations(operation).stream()
+                .collect(Collectors.groupingBy(Operation::getGroupId, Collectors.mapping(Operation::getId, Collectors.toSet())))
+                .forEach(kapellmeisterAfterCommitService::triggerNextOperations);
     }
 
     private void markAsWaitingResponse(Operation operation) {
         changeOperationStatus(operation, OperationStatus.WAIT_RESPONSE);
         operation.setExecutionResult(OperationExecutionResult.SUCCESS);
-        storageService.update(operation);
     }
 
     private String getFailComment(String message, OperationFailReason reason, Exception exception) {
@@ -284,7 +419,6 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
         } else {
             throw new KapellmeisterUnsupportedOperationException("Unsupported " + OperationImportanceType.class.getSimpleName() + " " + operation.getImportanceType());
         }
-        storageService.update(operation);
     }
 
     private static void changeOperationStatus(Operation operation, OperationStatus targetStatus) {
@@ -292,14 +426,8 @@ public class KapellmeisterOperationProcessorImpl implements KapellmeisterOperati
         operation.setStatus(targetStatus);
     }
 
-    private OperationExecutor<?> getExecutor(String executorName) {
-        return findExecutor(executorName)
+    private OperationExecutorDescriptor<?> getExecutor(String executorName) {
+        return operationExecutorsService.findExecutor(executorName)
                 .orElseThrow(() -> new ExecutorNotFoundException(executorName));
     }
-
-    private Optional<? extends OperationExecutor<?>> findExecutor(String executorName) {
-        return operationExecutorsService.getExecutors().stream()
-                .filter(executor -> executor.getName().equals(executorName))
-                .findFirst();
-    }
 }
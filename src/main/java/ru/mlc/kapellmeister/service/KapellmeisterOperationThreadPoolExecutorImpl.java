@@ -1,6 +1,5 @@
 package ru.mlc.kapellmeister.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
@@ -9,14 +8,31 @@ import ru.mlc.kapellmeister.api.KapellmeisterOperationProcessor;
 import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationPriority;
 import ru.mlc.kapellmeister.constants.OperationStatus;
 import ru.mlc.kapellmeister.constants.RollbackType;
 import ru.mlc.kapellmeister.db.Operation;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static ru.mlc.kapellmeister.constants.OperationStatus.CAN_RETRY;
 import static ru.mlc.kapellmeister.constants.OperationStatus.CREATED;
@@ -24,21 +40,150 @@ import static ru.mlc.kapellmeister.constants.OperationStatus.SUCCESS;
 import static ru.mlc.kapellmeister.constants.OperationStatus.VERIFICATION;
 
 @Slf4j
-@RequiredArgsConstructor
 public class KapellmeisterOperationThreadPoolExecutorImpl implements KapellmeisterOperationThreadPoolExecutor {
 
-    private final ThreadPoolExecutor threadPoolExecutor;
+    private final Executor executor;
     private final TransactionTemplate transactionTemplate;
     private final KapellmeisterStorageService storageService;
     private final KapellmeisterOperationProcessor kapellmeisterOperationProcessor;
+    /**
+     * Переданные в пул и еще не завершенные операции
+     */
+    private final Map<UUID, CompletableFuture<Void>> operationsInExecution = new ConcurrentHashMap<>();
+    /**
+     * Свободные места в пуле, место занимается до передачи операции в пул и освобождается после ее завершения
+     */
+    private final Semaphore capacity;
+    private final int maxCapacity;
+    /**
+     * Изоляция экзекуторов с ограниченным количеством одновременно выполняемых операций, ключ - имя экзекутора
+     */
+    private final Map<String, Semaphore> executorsCapacity;
+    /**
+     * Пул выбирает задачи из очереди по приоритету операций, задачи передаются в пул как {@link PrioritizedOperationTask}
+     */
+    private final boolean prioritized;
+
+    /**
+     * Пул с фиксированным количеством потоков, вместимость - потоки + очередь
+     */
+    public KapellmeisterOperationThreadPoolExecutorImpl(ThreadPoolExecutor threadPoolExecutor,
+                                                        TransactionTemplate transactionTemplate,
+                                                        KapellmeisterStorageService storageService,
+                                                        KapellmeisterOperationProcessor kapellmeisterOperationProcessor,
+                                                        Map<String, Integer> executorsMaxConcurrency) {
+        this(threadPoolExecutor,
+                threadPoolExecutor.getMaximumPoolSize() + threadPoolExecutor.getQueue().remainingCapacity(),
+                transactionTemplate,
+                storageService,
+                kapellmeisterOperationProcessor,
+                executorsMaxConcurrency);
+    }
+
+    /**
+     * Пул без собственного ограничения (например, виртуальный поток на задачу), одновременное выполнение ограничено capacity
+     */
+    public KapellmeisterOperationThreadPoolExecutorImpl(Executor executor,
+                                                        int capacity,
+                                                        TransactionTemplate transactionTemplate,
+                                                        KapellmeisterStorageService storageService,
+                                                        KapellmeisterOperationProcessor kapellmeisterOperationProcessor,
+                                                        Map<String, Integer> executorsMaxConcurrency) {
+        this.executor = executor;
+        this.transactionTemplate = transactionTemplate;
+        this.storageService = storageService;
+        this.kapellmeisterOperationProcessor = kapellmeisterOperationProcessor;
+        this.capacity = new Semaphore(capacity);
+        this.maxCapacity = capacity;
+        this.executorsCapacity = executorsMaxConcurrency.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> new Semaphore(entry.getValue())));
+        this.prioritized = executor instanceof ThreadPoolExecutor threadPoolExecutor
+                           && threadPoolExecutor.getQueue() instanceof PriorityBlockingQueue<?>;
+    }
+
+    @Override
+    public int getAvailableCapacity() {
+        return capacity.availablePermits();
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return executor instanceof ThreadPoolExecutor threadPoolExecutor ? threadPoolExecutor.getQueue().size() : 0;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return executor instanceof ThreadPoolExecutor threadPoolExecutor
+                ? threadPoolExecutor.getActiveCount()
+                : maxCapacity - capacity.availablePermits();
+    }
+
+    @Override
+    public Set<String> getSaturatedExecutorNames() {
+        return executorsCapacity.entrySet().stream()
+                .filter(entry -> entry.getValue().availablePermits() == 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<UUID> getOperationIdsInExecution() {
+        return Set.copyOf(operationsInExecution.keySet());
+    }
 
     @Override
     public void waitExecution() {
-        while (threadPoolExecutor.getActiveCount() > 0) {
-            Thread.yield();
+        while (!operationsInExecution.isEmpty()) {
+            try {
+                CompletableFuture.allOf(operationsInExecution.values().toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                log.debug("Выполнение операции завершилось ошибкой", e);
+            }
         }
     }
 
+    @Override
+    public boolean waitExecution(Duration timeout) {
+        Instant deadline = Instant.now().plus(timeout);
+        while (!operationsInExecution.isEmpty()) {
+            if (!await(operationsInExecution.values(), deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean waitExecution(Collection<UUID> operationIds, Duration timeout) {
+        List<CompletableFuture<Void>> futures = operationIds.stream()
+                .map(operationsInExecution::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return await(futures, Instant.now().plus(timeout));
+    }
+
+    private boolean await(Collection<CompletableFuture<Void>> futures, Instant deadline) {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(Math.max(Duration.between(Instant.now(), deadline).toMillis(), 0), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            log.debug("Выполнение операции завершилось ошибкой", e);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Истекло время ожидания завершения операций");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void track(UUID operationId, CompletableFuture<Void> future) {
+        operationsInExecution.put(operationId, future);
+        future.whenComplete((result, e) -> operationsInExecution.remove(operationId, future));
+    }
+
     @Override
     @Transactional
     public void saveResult(UUID operationId, OperationExecutionResult executionResult) {
@@ -46,13 +191,116 @@ public class KapellmeisterOperationThreadPoolExecutorImpl implements Kapellmeist
     }
 
     @Override
-    public void submitOperation(UUID operationId) {
-        try {
-            CompletableFuture.runAsync(() ->
-                    processOperation(operationId), threadPoolExecutor);
+    @Deprecated
+    public boolean submitOperation(UUID operationId) {
+        return submitOperation(storageService.getOperation(operationId));
+    }
+
+    @Override
+    public boolean submitOperation(Operation operation) {
+        UUID operationId = operation.getId();
+        if (submit(List.of(operation), () -> processOperation(operationId))) {
             log.info("Операция добавлена в выполнение: {}", operationId);
+            return true;
+        }
+        log.warn("Операция id:{} отклонена, очередь операций заполнена", operationId);
+        return false;
+    }
+
+    @Override
+    public boolean submitClaimedOperation(Operation operation) {
+        UUID operationId = operation.getId();
+        if (submit(List.of(operation), () -> kapellmeisterOperationProcessor.processOperation(operationId))) {
+            log.info("Захваченная операция добавлена в выполнение: {}", operationId);
+            return true;
+        }
+        log.warn("Операция id:{} отклонена, очередь операций заполнена, захват операции снят", operationId);
+        storageService.releaseClaims(List.of(operationId));
+        return false;
+    }
+
+    @Override
+    public boolean submitClaimedBatch(List<Operation> operations) {
+        List<UUID> operationIds = operations.stream().map(Operation::getId).toList();
+        if (submit(operations, () -> kapellmeisterOperationProcessor.processOperations(operationIds))) {
+            log.info("Пачка захваченных операций добавлена в выполнение: {}", operationIds);
+            return true;
+        }
+        log.warn("Пачка операций {} отклонена, очередь операций заполнена, захват операций снят", operationIds);
+        storageService.releaseClaims(operationIds);
+        return false;
+    }
+
+    /**
+     * Передает в пул одну задачу для операций одного экзекутора
+     */
+    private boolean submit(List<Operation> operations, Runnable task) {
+        Operation operation = operations.get(0);
+        Semaphore executorCapacity = executorsCapacity.get(operation.getExecutorName());
+        if (executorCapacity != null && !executorCapacity.tryAcquire()) {
+            log.info("Достигнут лимит одновременно выполняемых операций экзекутора {}", operation.getExecutorName());
+            return false;
+        }
+        if (!capacity.tryAcquire()) {
+            release(executorCapacity);
+            return false;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Runnable operationTask = () -> {
+            Throwable error = null;
+            try {
+                task.run();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                capacity.release();
+                release(executorCapacity);
+            }
+            if (error == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(error);
+            }
+        };
+        Runnable pooledTask = prioritized
+                ? new PrioritizedOperationTask(operations.stream().mapToInt(this::resolvePriority).min().orElseThrow(), operationTask)
+                : operationTask;
+        if (!execute(pooledTask)) {
+            capacity.release();
+            release(executorCapacity);
+            return false;
+        }
+        operations.forEach(submitted -> track(submitted.getId(), future));
+        return true;
+    }
+
+    /**
+     * Передает задачу в пул. Место освобождается в конце задачи, до того как поток пула вернется к очереди,
+     * поэтому при свободном месте пул может еще не принять задачу - в этом случае выполняется одна повторная попытка
+     */
+    private boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
         } catch (RejectedExecutionException e) {
-            log.warn("Операция id:{} отклонена, очередь операций заполнена", operationId);
+            Thread.yield();
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Задача не принята пулом потоков при наличии свободного места", e);
+            return false;
+        }
+    }
+
+    private int resolvePriority(Operation operation) {
+        return operation.getPriority() != null ? operation.getPriority() : OperationPriority.DEFAULT.getPriority();
+    }
+
+    private void release(Semaphore executorCapacity) {
+        if (executorCapacity != null) {
+            executorCapacity.release();
         }
     }
 
@@ -71,13 +319,13 @@ public class KapellmeisterOperationThreadPoolExecutorImpl implements Kapellmeist
                 Operation operation = storageService.getOperation(operationId);
                 if (operation.getStatus() == CREATED || operation.getStatus() == CAN_RETRY) {
                     changeOperationStatus(operation, OperationStatus.IN_WORK);
-                    return storageService.update(operation);
+                    return storageService.updateStatus(operation);
                 } else if (operation.getStatus() == VERIFICATION) {
                     changeOperationStatus(operation, OperationStatus.VERIFICATION_IN_WORK);
-                    return storageService.update(operation);
+                    return storageService.updateStatus(operation);
                 } else if ((operation.getStatus() == SUCCESS || operation.getStatus().isFailed()) && operation.getRollbackType() == RollbackType.ROLLBACK) {
                     changeOperationStatus(operation, OperationStatus.ROLLBACK_IN_WORK);
-                    return storageService.update(operation);
+                    return storageService.updateStatus(operation);
                 }
                 return false;
             }));
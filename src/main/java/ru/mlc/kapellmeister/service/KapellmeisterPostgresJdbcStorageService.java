@@ -1,7 +1,10 @@
 package ru.mlc.kapellmeister.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.mlc.common.exception.NotFoundException;
 import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
 import ru.mlc.kapellmeister.constants.OperationGroupStatus;
@@ -13,14 +16,20 @@ import ru.mlc.kapellmeister.db.repository.OperationJdbcRepository;
 import ru.mlc.kapellmeister.exceptions.KapellmeisterException;
 import ru.mlc.kapellmeister.exceptions.OperationGroupNotFoundException;
 import ru.mlc.kapellmeister.exceptions.OperationNotFoundException;
+import ru.mlc.kapellmeister.metrics.KapellmeisterMetrics;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -28,6 +37,8 @@ public class KapellmeisterPostgresJdbcStorageService implements KapellmeisterSto
 
     private final OperationJdbcRepository operationRepository;
     private final OperationGroupJdbcRepository operationGroupRepository;
+    private final KapellmeisterMetrics kapellmeisterMetrics;
+    private final KapellmeisterTimeSynchronizationService timeService;
 
     public List<Operation> findAll() {
         return operationRepository.findAll();
@@ -61,10 +72,27 @@ public class KapellmeisterPostgresJdbcStorageService implements KapellmeisterSto
         return operationRepository.findPrevious(operation);
     }
 
+    @Override
+    public OperationGroup setPreviousOperations(OperationGroup operationGroup) {
+        Map<UUID, Operation> groupOperations = operationGroup.getOperations().stream()
+                .collect(Collectors.toMap(Operation::getId, Function.identity()));
+        Map<UUID, List<Operation>> previousOperations = operationRepository.findPreviousByGroupId(operationGroup.getId());
+        operationGroup.getOperations().forEach(operation -> operation.setPrevious(
+                previousOperations.getOrDefault(operation.getId(), List.of()).stream()
+                        .map(previous -> groupOperations.getOrDefault(previous.getId(), previous))
+                        .collect(Collectors.toCollection(ArrayList::new))));
+        return operationGroup;
+    }
+
     public List<Operation> findNextOperations(Operation operation) {
         return operationRepository.findNext(operation);
     }
 
+    @Override
+    public Set<UUID> findLaneBlockedOperationIds(Set<UUID> operationIds) {
+        return operationRepository.findLaneBlocked(operationIds);
+    }
+
     public Set<String> getExecutorNamesWithUncompletedOperations() {
         Set<String> uncompletedOperationStatuses = Arrays.stream(OperationStatus.values())
                 .filter(status -> !status.isCompleted())
@@ -83,9 +111,111 @@ public class KapellmeisterPostgresJdbcStorageService implements KapellmeisterSto
         return operation;
     }
 
+    @Override
+    @Transactional
+    public void saveAll(List<Operation> operations) {
+        operations.stream()
+                .filter(operation -> operation.getId() == null)
+                .findFirst()
+                .ifPresent(operation -> {
+                    throw new KapellmeisterException("Для пакетного сохранения операции " + operation + " не задан идентификатор");
+                });
+        operationRepository.saveAll(operations);
+    }
+
+    @Override
+    public Operation loadPayload(Operation operation) {
+        return operationRepository.loadPayload(operation);
+    }
+
     @Override
     public boolean update(Operation operation) {
-        return operationRepository.update(operation);
+        OperationStatus previousStatus = operation.getPersistedStatus();
+        boolean updated = operationRepository.update(operation);
+        if (updated) {
+            recordOperationsUpdated(List.of(operation), Collections.singletonList(previousStatus));
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean updateStatus(Operation operation) {
+        OperationStatus previousStatus = operation.getPersistedStatus();
+        boolean updated = operationRepository.updateStatus(operation);
+        if (updated) {
+            recordOperationsUpdated(List.of(operation), Collections.singletonList(previousStatus));
+        }
+        return updated;
+    }
+
+    @Override
+    public int updateAll(List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return 0;
+        }
+        List<OperationStatus> previousStatuses = operations.stream()
+                .map(Operation::getPersistedStatus)
+                .toList();
+        List<Integer> previousVersions = operations.stream()
+                .map(Operation::getVersion)
+                .toList();
+        int updatedCount = operationRepository.updateAll(operations);
+        List<Operation> updatedOperations = new ArrayList<>(updatedCount);
+        List<OperationStatus> updatedPreviousStatuses = new ArrayList<>(updatedCount);
+        for (int i = 0; i < operations.size(); i++) {
+            if (!Objects.equals(previousVersions.get(i), operations.get(i).getVersion())) {
+                updatedOperations.add(operations.get(i));
+                updatedPreviousStatuses.add(previousStatuses.get(i));
+            }
+        }
+        recordOperationsUpdated(updatedOperations, updatedPreviousStatuses);
+        return updatedCount;
+    }
+
+    /**
+     * Снимок сохраненного состояния для метрик: до коммита транзакции операция может измениться еще раз
+     */
+    private static Operation getMetricsSnapshot(Operation operation) {
+        return Operation.builder()
+                .id(operation.getId())
+                .groupId(operation.getGroupId())
+                .executorName(operation.getExecutorName())
+                .type(operation.getType())
+                .status(operation.getStatus())
+                .createTimestamp(operation.getCreateTimestamp())
+                .build();
+    }
+
+    /**
+     * Учитывает переходы статусов в метриках после коммита текущей транзакции, чтобы откаченные переходы не попадали в метрики.
+     * Вне транзакции переходы учитываются сразу
+     *
+     * @param operations       операции после перехода
+     * @param previousStatuses статусы операций до перехода, в том же порядке
+     */
+    private void recordOperationsUpdated(List<Operation> operations, List<OperationStatus> previousStatuses) {
+        if (operations.isEmpty() || kapellmeisterMetrics == KapellmeisterMetrics.NOOP) {
+            return;
+        }
+        List<Operation> snapshots = operations.stream()
+                .map(KapellmeisterPostgresJdbcStorageService::getMetricsSnapshot)
+                .toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordOperationsUpdatedNow(snapshots, previousStatuses);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordOperationsUpdatedNow(snapshots, previousStatuses);
+            }
+        });
+    }
+
+    private void recordOperationsUpdatedNow(List<Operation> operations, List<OperationStatus> previousStatuses) {
+        for (int i = 0; i < operations.size(); i++) {
+            kapellmeisterMetrics.operationUpdated(operations.get(i), previousStatuses.get(i));
+        }
     }
 
     public Optional<OperationGroup> findGroup(UUID operationGroupId) {
@@ -101,6 +231,47 @@ public class KapellmeisterPostgresJdbcStorageService implements KapellmeisterSto
         return operationGroupRepository.findAvailableOperationGroupsCreatedBefore(groupCreateStartTime);
     }
 
+    public List<OperationGroup> getChangedAvailableGroups(Instant groupCreateStartTime) {
+        return operationGroupRepository.findChangedAvailableOperationGroupsCreatedBefore(groupCreateStartTime);
+    }
+
+    public List<OperationGroup> getRollbackGroups(Instant groupCreateStartTime) {
+        return operationGroupRepository.findByStatusesCreatedBefore(OperationGroupStatus.ROLLBACK, groupCreateStartTime);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Operation> claimReadyOperations(Instant groupCreateStartTime, Instant leaseExpiredBefore, int limit, Set<String> excludedExecutorNames) {
+        List<OperationJdbcRepository.ClaimedOperation> claimedOperations = operationRepository.claimReadyOperations(groupCreateStartTime,
+                leaseExpiredBefore, timeService.now(), limit, excludedExecutorNames);
+        List<Operation> operations = new ArrayList<>(claimedOperations.size());
+        List<OperationStatus> previousStatuses = new ArrayList<>(claimedOperations.size());
+        for (OperationJdbcRepository.ClaimedOperation claimedOperation : claimedOperations) {
+            operations.add(claimedOperation.operation());
+            previousStatuses.add(claimedOperation.previousStatus());
+        }
+        recordOperationsUpdated(operations, previousStatuses);
+        return operations;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int rejectSupersededActualStateOperations() {
+        return operationRepository.rejectSupersededActualStateOperations(timeService.now());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int releaseClaims(Collection<UUID> operationIds) {
+        return operationIds.isEmpty() ? 0 : operationRepository.releaseClaims(operationIds, timeService.now());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int renewClaims(Collection<UUID> operationIds) {
+        return operationIds.isEmpty() ? 0 : operationRepository.renewClaims(operationIds, timeService.now());
+    }
+
     public List<OperationGroup> getUncompleted() {
         return operationGroupRepository.getUncompleted();
     }
@@ -114,12 +285,12 @@ public class KapellmeisterPostgresJdbcStorageService implements KapellmeisterSto
                 .createTimestamp(Instant.now())
                 .updateTimestamp(Instant.now())
                 .status(OperationGroupStatus.CREATED)
+                .persistedStatus(OperationGroupStatus.CREATED)
                 .build();
     }
 
     @Transactional
-    public OperationGroup update(OperationGroup operationGroup) {
-        operationGroupRepository.update(operationGroup);
-        return operationGroup;
+    public boolean update(OperationGroup operationGroup) {
+        return operationGroupRepository.update(operationGroup);
     }
 }
@@ -41,4 +41,16 @@ public class KapellmeisterTimeSynchronizationService {
     public Instant calculateOperationExecutionBlockedForInstant() {
         return now().minusMillis(properties.getOperationGroupBlockedForRetryAfterCreate());
     }
+
+    public Instant calculateClaimLeaseExpiredInstant() {
+        return now().minusMillis(properties.getClaimLeaseTimeout());
+    }
+
+    public boolean isFullGroupScanRequired(Instant nextFullGroupScanInstant) {
+        return !now().isBefore(nextFullGroupScanInstant);
+    }
+
+    public Instant calculateNextFullGroupScanInstant() {
+        return now().plusMillis(properties.getClaimFullGroupScanInterval());
+    }
 }
@@ -0,0 +1,61 @@
+package ru.mlc.kapellmeister.service;
+
+import lombok.Value;
+import ru.mlc.kapellmeister.api.BatchOperationExecutor;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.VerifiableOperationExecutor;
+import ru.mlc.kapellmeister.constants.RollbackType;
+
+import java.util.Optional;
+
+/**
+ * Экзекутор с возможностями, вычисленными один раз при старте приложения
+ *
+ * @param <T> тип параметров выполнения операции
+ */
+@Value
+public class OperationExecutorDescriptor<T> {
+
+    OperationExecutor<T> executor;
+    /**
+     * Экзекутор с поддержкой проверки результата, null - если проверка не поддерживается
+     */
+    VerifiableOperationExecutor<T> verifier;
+    /**
+     * Экзекутор с поддержкой выполнения пачки операций, null - если не поддерживается
+     */
+    BatchOperationExecutor<T> batchExecutor;
+    RollbackType rollbackType;
+    boolean async;
+    /**
+     * Лимит одновременно выполняемых операций, null - если не ограничен
+     */
+    Integer maxConcurrency;
+
+    public static <T> OperationExecutorDescriptor<T> of(OperationExecutor<T> executor, Integer maxConcurrency) {
+        return new OperationExecutorDescriptor<>(
+                executor,
+                executor instanceof VerifiableOperationExecutor ? (VerifiableOperationExecutor<T>) executor : null,
+                executor instanceof BatchOperationExecutor ? (BatchOperationExecutor<T>) executor : null,
+                executor.getRollbackType(),
+                executor.getOperationType().isAsync(),
+                maxConcurrency != null ? maxConcurrency : executor.getMaxConcurrency().orElse(null)
+        );
+    }
+
+    public Optional<VerifiableOperationExecutor<T>> getVerifier() {
+        return Optional.ofNullable(verifier);
+    }
+
+    public Optional<BatchOperationExecutor<T>> getBatchExecutor() {
+        return Optional.ofNullable(batchExecutor);
+    }
+
+    public boolean supportsBatch() {
+        return batchExecutor != null;
+    }
+
+    public Optional<Integer> getMaxConcurrency() {
+        return Optional.ofNullable(maxConcurrency);
+    }
+}
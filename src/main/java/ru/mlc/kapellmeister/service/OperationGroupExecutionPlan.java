@@ -0,0 +1,234 @@
+package ru.mlc.kapellmeister.service;
+
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * План выполнения группы операций.
+ * Граф зависимостей строится один раз, кандидаты на выполнение поддерживаются инкрементально:
+ * для каждой операции хранится количество незавершенных предшествующих операций (для выполнения)
+ * и количество не откаченных следующих операций (для отката), кандидаты упорядочены по приоритету.
+ * Временные условия (задержка ретрая, ожидание ответа и т.п.) проверяются в момент выбора операции.
+ * Завершенные операции кандидатами не становятся (кроме отката группы), отклоненные при выборе кандидаты откладываются
+ * до следующего обновления плана, поэтому каждый выбор не перебирает заново все неготовые операции группы
+ */
+class OperationGroupExecutionPlan {
+
+    private final OperationGroupStatus groupStatus;
+    private final boolean rollback;
+    private final boolean hasCriticalOperations;
+    private final Map<UUID, Operation> operations = new HashMap<>();
+    private final Map<UUID, Integer> positions = new HashMap<>();
+    private final Map<UUID, List<Operation>> nextOperations = new HashMap<>();
+    private final Map<UUID, Integer> uncompletedPreviousCount = new HashMap<>();
+    private final Map<UUID, Integer> notRolledBackNextCount = new HashMap<>();
+    private final PriorityQueue<Operation> candidates;
+    private final Set<UUID> queued = new HashSet<>();
+    private final Map<UUID, Operation> deferred = new LinkedHashMap<>();
+    private final Map<UUID, Operation> parked = new LinkedHashMap<>();
+    private Set<UUID> laneBlockedOperationIds = Set.of();
+    private int uncompletedCriticalCount;
+
+    /**
+     * @param operationGroup группа операций с заполненными предшествующими операциями
+     */
+    OperationGroupExecutionPlan(OperationGroup operationGroup) {
+        this.groupStatus = operationGroup.getStatus();
+        this.rollback = groupStatus == OperationGroupStatus.ROLLBACK_IN_PROGRESS;
+        this.candidates = new PriorityQueue<>(Comparator.comparingInt(Operation::getPriority)
+                .thenComparing(operation -> positions.get(operation.getId())));
+        List<Operation> groupOperations = operationGroup.getOperations();
+        for (int i = 0; i < groupOperations.size(); i++) {
+            Operation operation = groupOperations.get(i);
+            operations.put(operation.getId(), operation);
+            positions.put(operation.getId(), i);
+        }
+        for (Operation operation : groupOperations) {
+            for (Operation previous : operation.getPrevious()) {
+                nextOperations.computeIfAbsent(previous.getId(), id -> new ArrayList<>()).add(operation);
+            }
+        }
+        for (Operation operation : groupOperations) {
+            uncompletedPreviousCount.put(operation.getId(), (int) operation.getPrevious().stream()
+                    .filter(previous -> !isDone(previous.getStatus()))
+                    .count());
+            notRolledBackNextCount.put(operation.getId(), (int) getNextOperations(operation).stream()
+                    .filter(next -> !isRolledBack(next.getStatus()))
+                    .count());
+        }
+        this.hasCriticalOperations = groupOperations.stream().anyMatch(this::isCritical);
+        this.uncompletedCriticalCount = (int) groupOperations.stream()
+                .filter(this::isCritical)
+                .filter(operation -> !OperationStatus.COMPLETED.contains(operation.getStatus()))
+                .count();
+        groupOperations.forEach(this::offer);
+    }
+
+    OperationGroupStatus getGroupStatus() {
+        return groupStatus;
+    }
+
+    Collection<Operation> getOperations() {
+        return operations.values();
+    }
+
+    /**
+     * Операции, ожидающие выполнения более ранних операций той же полосы из других групп
+     */
+    void setLaneBlockedOperationIds(Set<UUID> laneBlockedOperationIds) {
+        this.laneBlockedOperationIds = laneBlockedOperationIds;
+    }
+
+    boolean isLaneBlocked(Operation operation) {
+        return laneBlockedOperationIds.contains(operation.getId());
+    }
+
+    /**
+     * Возвращает операцию с наивысшим приоритетом из кандидатов, удовлетворяющую условию, и исключает ее из кандидатов.
+     * Кандидаты, не удовлетворяющие условию, откладываются: условие может не выполняться временно
+     * (задержка ретрая, очередь полосы, заполненный экзекутор), поэтому они возвращаются в кандидаты при обновлении плана
+     */
+    Optional<Operation> poll(Predicate<Operation> readyFilter) {
+        while (!candidates.isEmpty()) {
+            Operation operation = candidates.poll();
+            queued.remove(operation.getId());
+            if (!isCandidateStatus(operation)) {
+                continue;
+            }
+            if (readyFilter.test(operation)) {
+                return Optional.of(operation);
+            }
+            parked.put(operation.getId(), operation);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Возвращает в кандидаты выбранную операцию, которую не удалось передать на выполнение
+     */
+    void requeue(Operation operation) {
+        offer(operation);
+    }
+
+    /**
+     * Все предшествующие операции завершены
+     */
+    boolean allPreviousOperationsCompleted(Operation operation) {
+        return uncompletedPreviousCount.getOrDefault(operation.getId(), 0) == 0;
+    }
+
+    /**
+     * Все следующие операции откачены или не выполнялись
+     */
+    boolean allNextOperationsRolledBack(Operation operation) {
+        return notRolledBackNextCount.getOrDefault(operation.getId(), 0) == 0;
+    }
+
+    /**
+     * Применяет актуальные состояния операций группы, пересчитывает счетчики для операций с изменившимся статусом
+     *
+     * @return true, если есть кандидаты на выполнение
+     */
+    boolean update(Collection<Operation> actualOperations) {
+        for (Operation actual : actualOperations) {
+            Operation operation = operations.get(actual.getId());
+            if (operation == null || operation.getStatus() == actual.getStatus()) {
+                continue;
+            }
+            OperationStatus oldStatus = operation.getStatus();
+            operation.setStatus(actual.getStatus());
+            operation.setAttemptCount(actual.getAttemptCount());
+            operation.setLastExecutionTimeStamp(actual.getLastExecutionTimeStamp());
+            operation.setVersion(actual.getVersion());
+
+            int doneDelta = Boolean.compare(isDone(actual.getStatus()), isDone(oldStatus));
+            if (doneDelta != 0) {
+                getNextOperations(operation).forEach(next -> {
+                    uncompletedPreviousCount.merge(next.getId(), -doneDelta, Integer::sum);
+                    offer(next);
+                });
+            }
+            int rolledBackDelta = Boolean.compare(isRolledBack(actual.getStatus()), isRolledBack(oldStatus));
+            if (rolledBackDelta != 0) {
+                operation.getPrevious().stream()
+                        .filter(previous -> operations.containsKey(previous.getId()))
+                        .forEach(previous -> {
+                            notRolledBackNextCount.merge(previous.getId(), -rolledBackDelta, Integer::sum);
+                            offer(previous);
+                        });
+            }
+            if (isCritical(operation)) {
+                uncompletedCriticalCount -= Boolean.compare(OperationStatus.COMPLETED.contains(actual.getStatus()), OperationStatus.COMPLETED.contains(oldStatus));
+                if (!rollback && uncompletedCriticalCount == 0) {
+                    List<Operation> released = new ArrayList<>(deferred.values());
+                    deferred.clear();
+                    released.forEach(this::offer);
+                }
+            }
+            offer(operation);
+        }
+        List<Operation> unparked = new ArrayList<>(parked.values());
+        parked.clear();
+        unparked.forEach(this::offer);
+        return !candidates.isEmpty();
+    }
+
+    private void offer(Operation operation) {
+        if (queued.contains(operation.getId())
+            || !isCandidateStatus(operation)
+            || !(allPreviousOperationsCompleted(operation) || allNextOperationsRolledBack(operation))) {
+            return;
+        }
+        // пока есть незавершенные критичные операции, кандидатами являются только они, при откате - только критичные операции
+        if (rollback && hasCriticalOperations && !isCritical(operation)) {
+            return;
+        }
+        if (!rollback && uncompletedCriticalCount > 0
+            && !(isCritical(operation) && !OperationStatus.COMPLETED.contains(operation.getStatus()))) {
+            deferred.put(operation.getId(), operation);
+            return;
+        }
+        queued.add(operation.getId());
+        candidates.add(operation);
+    }
+
+    /**
+     * Завершенные операции выбираются только при откате группы
+     */
+    private boolean isCandidateStatus(Operation operation) {
+        return rollback || !OperationStatus.COMPLETED.contains(operation.getStatus());
+    }
+
+    private List<Operation> getNextOperations(Operation operation) {
+        return nextOperations.getOrDefault(operation.getId(), List.of());
+    }
+
+    private boolean isCritical(Operation operation) {
+        return operation.getImportanceType() == OperationImportanceType.CRITICAL;
+    }
+
+    private static boolean isDone(OperationStatus status) {
+        return status.isCompleted() || status.isSuspended();
+    }
+
+    private static boolean isRolledBack(OperationStatus status) {
+        return status == OperationStatus.ROLLBACK_SUCCESS || status == OperationStatus.CREATED;
+    }
+}
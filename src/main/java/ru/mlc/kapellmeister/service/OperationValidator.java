@@ -10,8 +10,13 @@ import ru.mlc.kapellmeister.exceptions.OperationConfigValidationException;
 import ru.mlc.kapellmeister.exceptions.OperationCycleOrderValidationException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -20,14 +25,40 @@ public class OperationValidator {
 
     private final KapellmeisterStorageService kapellmeisterStorageService;
 
+    /**
+     * Полная проверка порядка операций группы: предшествующие операции загружаются одним запросом, граф проверяется в памяти
+     */
     public void validateOrder(OperationGroup operationGroup) {
+        kapellmeisterStorageService.setPreviousOperations(operationGroup);
         validateCycleBinding(operationGroup);
         operationGroup.getOperations().forEach(this::validatePreviousForCritical);
     }
 
+    /**
+     * Инкрементальная проверка новой операции без обращения к БД.
+     * Ранее проверенные операции образуют ациклический граф, а на новую операцию еще никто не ссылается,
+     * поэтому проверяются только связи новой операции, уже проверенные операции повторно не обходятся.
+     * Для критичной операции достаточно проверить непосредственно предшествующие операции:
+     * все предшествующие критичной операции уже проверены на то же правило
+     *
+     * @param operation             новая операция
+     * @param validatedOperationIds идентификаторы уже проверенных операций, дополняется операциями, прошедшими проверку
+     */
+    public void validateNewOperation(Operation operation, Set<UUID> validatedOperationIds) {
+        findCycle(operation, new LinkedHashMap<>(), validatedOperationIds);
+        if (operation.getImportanceType() == OperationImportanceType.CRITICAL) {
+            operation.getPrevious().stream()
+                    .filter(o -> o.getImportanceType() != OperationImportanceType.CRITICAL)
+                    .findFirst()
+                    .ifPresent(o -> {
+                        throw new OperationConfigValidationException("Критической операции " + operation + " предшествует не критическая " + o);
+                    });
+        }
+    }
+
     public void validatePreviousForCritical(Operation operation) {
         if (operation.getImportanceType() == OperationImportanceType.CRITICAL) {
-            getAllPrevious(operation, new ArrayList<>()).stream()
+            getAllPrevious(operation, Collections.newSetFromMap(new IdentityHashMap<>()), new ArrayList<>()).stream()
                     .filter(o -> o.getImportanceType() != OperationImportanceType.CRITICAL)
                     .findFirst()
                     .ifPresent(o -> {
@@ -36,36 +67,39 @@ public class OperationValidator {
         }
     }
 
-    private List<Operation> getAllPrevious(Operation operation, List<Operation> list) {
-        kapellmeisterStorageService.setPreviousOperation(operation);
+    private List<Operation> getAllPrevious(Operation operation, Set<Operation> visited, List<Operation> list) {
         for (Operation previous : operation.getPrevious()) {
-            list.add(previous);
-            getAllPrevious(previous, list);
+            if (visited.add(previous)) {
+                list.add(previous);
+                getAllPrevious(previous, visited, list);
+            }
         }
         return list;
     }
 
     public void validateCycleBinding(OperationGroup operationGroup) {
-        operationGroup.getOperations().forEach(this::validateCycleOrder);
-    }
-
-    private void validateCycleOrder(Operation operation) {
-        LinkedList<Operation> chain = new LinkedList<>();
-        findCycle(operation, chain);
+        Set<UUID> visited = new HashSet<>();
+        operationGroup.getOperations().forEach(operation -> findCycle(operation, new LinkedHashMap<>(), visited));
     }
 
-    private void findCycle(Operation operation, LinkedList<Operation> chain) {
-        if (chain.contains(operation)) {
-            chain.add(operation);
-            throw new OperationCycleOrderValidationException(chain);
+    /**
+     * Поиск в глубину: chain - операции текущего пути, visited - операции, обход которых завершен
+     */
+    private void findCycle(Operation operation, LinkedHashMap<UUID, Operation> chain, Set<UUID> visited) {
+        if (chain.containsKey(operation.getId())) {
+            LinkedList<Operation> cycledChain = new LinkedList<>(chain.values());
+            cycledChain.add(operation);
+            throw new OperationCycleOrderValidationException(cycledChain);
         }
-        chain.add(operation);
-
-        kapellmeisterStorageService.setPreviousOperation(operation);
+        if (visited.contains(operation.getId())) {
+            return;
+        }
+        chain.put(operation.getId(), operation);
         for (Operation previous : operation.getPrevious()) {
-            findCycle(previous, chain);
+            findCycle(previous, chain, visited);
         }
-        chain.removeLast();
+        chain.remove(operation.getId());
+        visited.add(operation.getId());
     }
 
     public void validateOperationsRelation(OperationGroup operationGroup, List<Operation> operations) {
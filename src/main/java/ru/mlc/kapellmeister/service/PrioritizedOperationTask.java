@@ -0,0 +1,68 @@
+package ru.mlc.kapellmeister.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Задача выполнения операции в пуле потоков с приоритетом операции
+ */
+@Getter
+public class PrioritizedOperationTask implements Runnable {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * Приоритет операции, меньшее значение - более срочная операция (см. {@link ru.mlc.kapellmeister.constants.OperationPriority})
+     */
+    private final int priority;
+    private final long enqueuedAt;
+    private final long sequence;
+    private final Runnable task;
+
+    public PrioritizedOperationTask(int priority, Runnable task) {
+        this.priority = priority;
+        this.enqueuedAt = System.currentTimeMillis();
+        this.sequence = SEQUENCE.incrementAndGet();
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    /**
+     * Порядок выборки задач из очереди пула: по приоритету, затем по времени постановки в очередь.
+     * Ожидание в очереди в течение agingInterval повышает приоритет задачи на одну ступень,
+     * поэтому задача с низким приоритетом ожидает более срочные задачи не дольше priority * agingInterval.
+     * Ключ сортировки не меняется, пока задача находится в очереди
+     *
+     * @param agingInterval время ожидания, повышающее приоритет задачи на одну ступень
+     */
+    public static Comparator<PrioritizedOperationTask> comparator(Duration agingInterval) {
+        long agingMillis = agingInterval.toMillis();
+        return Comparator.comparingLong((PrioritizedOperationTask task) -> dispatchKey(task, agingMillis))
+                .thenComparingLong(PrioritizedOperationTask::getSequence);
+    }
+
+    /**
+     * Очередь пула потоков с порядком выборки {@link #comparator(Duration)}.
+     * Задачи, переданные в пул не как {@link PrioritizedOperationTask}, выбираются после задач операций
+     *
+     * @param initialCapacity начальный размер очереди
+     * @param agingInterval   время ожидания, повышающее приоритет задачи на одну ступень
+     */
+    public static PriorityBlockingQueue<Runnable> queue(int initialCapacity, Duration agingInterval) {
+        return new PriorityBlockingQueue<>(initialCapacity, Comparator.comparing(
+                (Runnable runnable) -> runnable instanceof PrioritizedOperationTask task ? task : null,
+                Comparator.nullsLast(comparator(agingInterval))));
+    }
+
+    private static long dispatchKey(PrioritizedOperationTask task, long agingMillis) {
+        return task.getEnqueuedAt() + task.getPriority() * agingMillis;
+    }
+}
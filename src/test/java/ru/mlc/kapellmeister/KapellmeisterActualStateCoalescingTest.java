@@ -0,0 +1,127 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@KapellmeisterIntegrationTest(KapellmeisterActualStateCoalescingTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.actual-state-coalescing-enabled=true")
+class KapellmeisterActualStateCoalescingTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void executeOnlyNewestOperationPerEntity() throws InterruptedException {
+        UUID entityId = UUID.randomUUID();
+        UUID otherEntityId = UUID.randomUUID();
+        OperationState first = publish(entityId, "1");
+        OperationState second = publish(entityId, "2");
+        OperationState newest = publish(entityId, "3");
+        OperationState other = publish(otherEntityId, "other");
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(OperationStatus.REJECTED, storageService.getOperation(first.getId()).getStatus());
+        assertEquals(OperationStatus.REJECTED, storageService.getOperation(second.getId()).getStatus());
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(newest.getId()).getStatus());
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(other.getId()).getStatus());
+        assertEquals(Set.of("3", "other"), Set.copyOf(testExecutor.getPublished()));
+    }
+
+    @Test
+    void failedNewerOperationDoesNotSupersede() throws InterruptedException {
+        UUID entityId = UUID.randomUUID();
+        OperationState valid = publish(entityId, "valid");
+        OperationState failed = publish(entityId, "failed");
+        transactionTemplate.executeWithoutResult(status -> {
+            Operation operation = storageService.getOperation(failed.getId());
+            operation.setStatus(OperationStatus.FAILED);
+            storageService.update(operation);
+        });
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(valid.getId()).getStatus());
+        assertEquals(OperationStatus.FAILED, storageService.getOperation(failed.getId()).getStatus());
+    }
+
+    private OperationState publish(UUID entityId, String state) throws InterruptedException {
+        Thread.sleep(5);
+        return transactionTemplate.execute(status -> kapellmeister.use(testExecutor)
+                .params(state)
+                .relatedEntityId(entityId)
+                .addToQueue());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Getter
+        private final List<String> published = new CopyOnWriteArrayList<>();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.PUBLISH_ACTUAL_STATE;
+        }
+
+        @Override
+        public String getName() {
+            return "test-actual-state";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            published.add(param);
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
 import ru.mlc.kapellmeister.constants.OperationExecutionResult;
 import ru.mlc.kapellmeister.constants.OperationStatus;
 import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -108,8 +109,9 @@ class KapellmeisterAsyncTest {
         });
 
         for (int i = 0; i < 10; i++) {
+            Operation operation = storageService.getOperation(operationStateList.get(i).getId());
             for (int j = 0; j < 4; j++) {
-                kapellmeisterOperationThreadPoolExecutor.submitOperation(operationStateList.get(i).getId());
+                kapellmeisterOperationThreadPoolExecutor.submitOperation(operation);
             }
         }
 
@@ -0,0 +1,155 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.BatchOperationExecutor;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationFailReason;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterBatchExecutorTest.TestConfig.class)
+@TestPropertySource(properties = {
+        "kapellmeister.claim-enabled=true",
+        "kapellmeister.batch-max-size=4"
+})
+class KapellmeisterBatchExecutorTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void executeClaimedOperationsInBatches() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 10; i++) {
+                kapellmeister.use(testExecutor).params(String.valueOf(i)).addToQueue();
+            }
+            kapellmeister.use(testExecutor).params("fail").maxAttemptCount(3).addToQueue();
+        });
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        Map<String, OperationStatus> statuses = new HashMap<>();
+        storageService.findAll().forEach(operation -> statuses.put(operation.getParams(), operation.getStatus()));
+        assertEquals(11, statuses.size());
+        assertEquals(10, statuses.values().stream().filter(status -> status == OperationStatus.SUCCESS).count());
+        assertEquals(OperationStatus.CAN_RETRY, statuses.get("fail"));
+        assertEquals(List.of(4, 4, 3), testExecutor.getBatchSizes());
+        assertEquals(11, storageService.findAll().stream().mapToInt(Operation::getAttemptCount).sum());
+    }
+
+    @Test
+    void rejectEnqueueInsideBatch() {
+        transactionTemplate.executeWithoutResult(status ->
+                kapellmeister.use(testExecutor).params("nested").addToQueue());
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        List<Operation> operations = storageService.findAll();
+        assertEquals(List.of("nested"), operations.stream().map(Operation::getParams).toList());
+        assertNotEquals(OperationStatus.SUCCESS, operations.get(0).getStatus());
+    }
+
+    @Test
+    void failAttemptsOfBatchOnExecutorException() {
+        transactionTemplate.executeWithoutResult(status -> {
+            kapellmeister.use(testExecutor).params("1").maxAttemptCount(3).addToQueue();
+            kapellmeister.use(testExecutor).params("throw").maxAttemptCount(3).addToQueue();
+        });
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        List<Operation> operations = storageService.findAll();
+        assertEquals(2, operations.size());
+        operations.forEach(operation -> {
+            assertEquals(OperationStatus.CAN_RETRY, operation.getStatus());
+            assertEquals(1, operation.getAttemptCount());
+            assertTrue(operation.getComment().contains(OperationFailReason.EXECUTION_ERROR.getDescription()));
+        });
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements BatchOperationExecutor<String> {
+
+        @Getter
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        @Lazy
+        @Autowired
+        private Kapellmeister kapellmeister;
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SEND_KAFKA_MESSAGE;
+        }
+
+        @Override
+        public String getName() {
+            return "test-batch";
+        }
+
+        @Override
+        public Map<Integer, OperationExecutionResult> executeBatch(List<String> params) {
+            batchSizes.add(params.size());
+            Map<Integer, OperationExecutionResult> results = new HashMap<>();
+            if (params.contains("throw")) {
+                throw new IllegalStateException("Пачка не выполнена");
+            }
+            for (int i = 0; i < params.size(); i++) {
+                if ("nested".equals(params.get(i))) {
+                    kapellmeister.use(this).params("child").addToQueue();
+                }
+                if (!"fail".equals(params.get(i))) {
+                    results.put(i, OperationExecutionResult.SUCCESS);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
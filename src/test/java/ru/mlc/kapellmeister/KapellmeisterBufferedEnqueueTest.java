@@ -0,0 +1,131 @@
+package ru.mlc.kapellmeister;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.exceptions.OperationConfigValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterBufferedEnqueueTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.buffered-enqueue-enabled=true")
+class KapellmeisterBufferedEnqueueTest {
+
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void saveBufferedChainBeforeCommit() {
+        List<OperationState> operations = transactionTemplate.execute(status -> {
+            List<OperationState> chain = new ArrayList<>();
+            OperationState previous = kapellmeister.use(testExecutor).params("0").addToQueue();
+            chain.add(previous);
+            for (int i = 1; i < 50; i++) {
+                previous = kapellmeister.use(testExecutor).params(String.valueOf(i)).after(previous.getId()).addToQueue();
+                chain.add(previous);
+            }
+            assertTrue(storageService.findAll().isEmpty());
+            return chain;
+        });
+
+        OperationGroup group = storageService.setPreviousOperations(storageService.getGroup(operations.get(0).getGroupId()));
+        Map<UUID, Operation> savedOperations = group.getOperations().stream()
+                .collect(Collectors.toMap(Operation::getId, Function.identity()));
+        assertEquals(50, savedOperations.size());
+        for (int i = 1; i < operations.size(); i++) {
+            List<Operation> previous = savedOperations.get(operations.get(i).getId()).getPrevious();
+            assertEquals(1, previous.size());
+            assertEquals(operations.get(i - 1).getId(), previous.get(0).getId());
+        }
+    }
+
+    @Test
+    void flushBeforeSearchInCurrentGroup() {
+        Integer found = transactionTemplate.execute(status -> {
+            kapellmeister.use(testExecutor).params("1").addToQueue();
+            kapellmeister.use(testExecutor).params("2").addToQueue();
+            return kapellmeister.findOperationInCurrentGroup(testExecutor).size();
+        });
+
+        assertEquals(2, found);
+        assertEquals(2, storageService.findAll().size());
+    }
+
+    @Test
+    void validateOrderOnFlush() {
+        assertThrows(OperationConfigValidationException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            OperationState required = kapellmeister.use(testExecutor)
+                    .params("1")
+                    .importanceType(OperationImportanceType.REQUIRED)
+                    .addToQueue();
+            kapellmeister.use(testExecutor).params("2").after(required.getId()).addToQueue();
+        }));
+
+        assertTrue(storageService.findAll().isEmpty());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-buffered";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterOperationProcessor;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+import ru.mlc.kapellmeister.service.KapellmeisterTimeSynchronizationService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@KapellmeisterIntegrationTest(KapellmeisterClaimTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.claim-enabled=true")
+class KapellmeisterClaimTest {
+
+    private static final Instant LEASE_EXPIRED_BEFORE = Instant.now().minusSeconds(600);
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private TestAsyncExecutor testAsyncExecutor;
+    @Autowired
+    private KapellmeisterOperationProcessor operationProcessor;
+    @SpyBean
+    private KapellmeisterTimeSynchronizationService timeService;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void claimOnlyReadyOperations() {
+        List<OperationState> operations = transactionTemplate.execute(status -> {
+            OperationState first = kapellmeister.use(testExecutor).params("1").addToQueue();
+            OperationState second = kapellmeister.use(testExecutor).params("2").after(first.getId()).addToQueue();
+            OperationState independent = kapellmeister.use(testExecutor).params("3").addToQueue();
+            return List.of(first, second, independent);
+        });
+
+        List<Operation> claimed = storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of());
+
+        assertEquals(2, claimed.size());
+        assertTrue(claimed.stream().allMatch(operation -> operation.getStatus() == OperationStatus.IN_WORK));
+        assertTrue(claimed.stream().noneMatch(operation -> operation.getId().equals(operations.get(1).getId())));
+        assertTrue(storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).isEmpty());
+    }
+
+    @Test
+    void releaseClaimedOperation() {
+        OperationState operation = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).size());
+        assertEquals(1, storageService.releaseClaims(List.of(operation.getId())));
+
+        assertEquals(OperationStatus.CREATED, storageService.getOperation(operation.getId()).getStatus());
+    }
+
+    @Test
+    void keepReleasedClaimAfterOuterRollback() {
+        OperationState operation = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).size());
+        transactionTemplate.executeWithoutResult(status -> {
+            assertEquals(1, storageService.releaseClaims(List.of(operation.getId())));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(OperationStatus.CREATED, storageService.getOperation(operation.getId()).getStatus());
+    }
+
+    @Test
+    void keepRenewedClaim() {
+        OperationState operation = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).size());
+        when(timeService.now()).thenReturn(Instant.now().plusSeconds(60));
+        assertEquals(1, storageService.renewClaims(List.of(operation.getId())));
+
+        assertTrue(storageService.claimReadyOperations(Instant.now(), Instant.now().plusSeconds(30), 10, Set.of()).isEmpty());
+        assertEquals(OperationStatus.IN_WORK, storageService.getOperation(operation.getId()).getStatus());
+    }
+
+    @Test
+    void skipRenewalOfCompletedOperation() {
+        OperationState operation = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertEquals(0, storageService.renewClaims(List.of(operation.getId())));
+    }
+
+    @Test
+    void skipOperationsOfExcludedExecutors() {
+        transactionTemplate.executeWithoutResult(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertTrue(storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of(testExecutor.getName())).isEmpty());
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of("other-executor")).size());
+    }
+
+    @Test
+    void reclaimOperationWhenLeaseExpired() {
+        OperationState operation = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).size());
+        assertTrue(storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).isEmpty());
+
+        List<Operation> reclaimed = storageService.claimReadyOperations(Instant.now(), Instant.now().plusSeconds(1), 10, Set.of());
+        assertEquals(1, reclaimed.size());
+        assertEquals(operation.getId(), reclaimed.get(0).getId());
+    }
+
+    @Test
+    void releaseClaimedOperationWithExpiredResponseWaiting() {
+        OperationState operation = addExpiredAsyncOperation();
+
+        List<Operation> claimed = storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of());
+        assertEquals(List.of(operation.getId()), claimed.stream().map(Operation::getId).toList());
+        assertEquals(OperationStatus.WAIT_RESPONSE_IN_WORK, claimed.get(0).getStatus());
+        assertEquals(1, storageService.releaseClaims(List.of(operation.getId())));
+
+        assertEquals(OperationStatus.WAIT_RESPONSE, storageService.getOperation(operation.getId()).getStatus());
+    }
+
+    @Test
+    void failAttemptOfClaimedOperationWithExpiredResponseWaiting() {
+        OperationState operation = addExpiredAsyncOperation();
+
+        assertEquals(1, storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).size());
+        kapellmeisterEngine.saveResult(operation.getId(), OperationExecutionResult.SUCCESS);
+        operationProcessor.processOperation(operation.getId());
+
+        Operation processed = storageService.getOperation(operation.getId());
+        assertEquals(OperationStatus.CAN_RETRY, processed.getStatus());
+        assertEquals(OperationExecutionResult.ATTEMPT_FAILED, processed.getExecutionResult());
+        assertEquals(1, processed.getAttemptCount());
+        assertEquals(0, testAsyncExecutor.getExecutionCount().get());
+    }
+
+    @Test
+    void updateStatusOfGroupWithMissedChangeByFullScan() {
+        OperationState operationState = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+        // изменение операции зафиксировано раньше последнего обновления группы и не определяется как изменение группы
+        transactionTemplate.executeWithoutResult(status -> {
+            Operation operation = storageService.getOperation(operationState.getId());
+            operation.setStatus(OperationStatus.SUCCESS);
+            storageService.update(operation);
+        });
+        transactionTemplate.executeWithoutResult(status -> storageService.update(storageService.getGroup(operationState.getGroupId())));
+        when(timeService.isFullGroupScanRequired(any())).thenReturn(true);
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(OperationGroupStatus.COMPLETED, storageService.getGroup(operationState.getGroupId()).getStatus());
+    }
+
+    @Test
+    void skipUpdateOfConcurrentlyChangedGroup() {
+        OperationState operationState = transactionTemplate.execute(status ->
+                kapellmeister.use(testExecutor).params("1").addToQueue());
+        OperationGroup rollbackGroup = storageService.getGroup(operationState.getGroupId());
+        OperationGroup staleGroup = storageService.getGroup(operationState.getGroupId());
+
+        rollbackGroup.setStatus(OperationGroupStatus.ROLLBACK);
+        assertTrue(storageService.update(rollbackGroup));
+        staleGroup.setStatus(OperationGroupStatus.COMPLETED);
+        assertFalse(storageService.update(staleGroup));
+
+        assertEquals(OperationGroupStatus.ROLLBACK, storageService.getGroup(operationState.getGroupId()).getStatus());
+    }
+
+    @Test
+    void executeChainOfOperations() {
+        List<OperationState> operations = transactionTemplate.execute(status -> {
+            OperationState first = kapellmeister.use(testExecutor).params("1").addToQueue();
+            OperationState second = kapellmeister.use(testExecutor).params("2").after(first.getId()).addToQueue();
+            return List.of(first, second);
+        });
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(operations.get(0).getId()).getStatus());
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(operations.get(1).getId()).getStatus());
+        assertEquals(OperationGroupStatus.COMPLETED, storageService.getGroup(operations.get(0).getGroupId()).getStatus());
+    }
+
+    /**
+     * Асинхронная операция после первой попытки, время ожидания ответа по которой истекло
+     */
+    private OperationState addExpiredAsyncOperation() {
+        OperationState operationState = transactionTemplate.execute(status ->
+                kapellmeister.use(testAsyncExecutor).params("1").maxAttemptCount(2).addToQueue());
+        transactionTemplate.executeWithoutResult(status -> {
+            Operation operation = storageService.getOperation(operationState.getId());
+            operation.setStatus(OperationStatus.WAIT_RESPONSE);
+            operation.setExecutionResult(OperationExecutionResult.SUCCESS);
+            operation.setAttemptCount(1);
+            operation.setRetryDelay(0L);
+            operation.setWaitResponseTimeout(1000L);
+            operation.setLastExecutionTimeStamp(Instant.now().minusSeconds(60));
+            storageService.update(operation);
+        });
+        return operationState;
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+
+        @Bean
+        public TestAsyncExecutor testAsyncExecutor() {
+            return new TestAsyncExecutor();
+        }
+    }
+
+    public static class TestAsyncExecutor implements OperationExecutor<String> {
+
+        @Getter
+        private final AtomicInteger executionCount = new AtomicInteger();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.ASYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-claim-async";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            executionCount.incrementAndGet();
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-claim";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterCompactGroupScanTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.compact-group-scan-enabled=true")
+class KapellmeisterCompactGroupScanTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void loadGroupOperationsWithoutPayload() {
+        OperationState operationState = addToQueue("compact");
+
+        Operation operation = storageService.getGroup(operationState.getGroupId()).getOperations().get(0);
+        assertNull(operation.getParams());
+        assertNull(operation.getDescription());
+
+        storageService.loadPayload(operation);
+        assertEquals("compact", operation.getParams());
+        assertEquals("description", operation.getDescription());
+    }
+
+    @Test
+    void executeOperationsLoadedWithoutPayload() {
+        OperationState operation = addToQueue("execute");
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(operation.getId()).getStatus());
+        assertEquals("execute", storageService.getOperation(operation.getId()).getParams());
+        assertTrue(testExecutor.getExecuted().contains("execute"));
+    }
+
+    private OperationState addToQueue(String params) {
+        return transactionTemplate.execute(status -> kapellmeister.use(testExecutor)
+                .params(params)
+                .description("description")
+                .addToQueue());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Getter
+        private final List<String> executed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-compact-scan";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            executed.add(param);
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterCompletionTriggerTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.completion-trigger-enabled=true")
+class KapellmeisterCompletionTriggerTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void executeNextOperationsAfterCompletion() throws InterruptedException {
+        List<OperationState> operations = transactionTemplate.execute(status -> {
+            OperationState first = kapellmeister.use(testExecutor).params("1").addToQueue();
+            OperationState second = kapellmeister.use(testExecutor).params("2").after(first.getId()).addToQueue();
+            OperationState third = kapellmeister.use(testExecutor).params("3").after(second.getId()).addToQueue();
+            return List.of(first, second, third);
+        });
+
+        kapellmeisterEngine.processOperationsOfGroup(operations.get(0).getGroupId(), Instant.now().plusSeconds(100), operation -> true, -1);
+
+        Instant waitDeadline = Instant.now().plusSeconds(30);
+        while (storageService.getOperation(operations.get(2).getId()).getStatus() != OperationStatus.SUCCESS && Instant.now().isBefore(waitDeadline)) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(List.of("1", "2", "3"), testExecutor.getOrder());
+        assertTrue(operations.stream()
+                .allMatch(operation -> storageService.getOperation(operation.getId()).getStatus() == OperationStatus.SUCCESS));
+    }
+
+    @EnableAsync
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Getter
+        private final List<String> order = new CopyOnWriteArrayList<>();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-completion-trigger";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            order.add(param);
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterDiffLogLaneTest.TestConfig.class)
+class KapellmeisterDiffLogLaneTest {
+
+    private static final Instant LEASE_EXPIRED_BEFORE = Instant.now().minusSeconds(600);
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void claimOnlyFirstOperationOfLane() throws InterruptedException {
+        UUID entityId = UUID.randomUUID();
+        OperationState first = publish(entityId, "1");
+        OperationState second = publish(entityId, "2");
+        OperationState otherLane = publish(UUID.randomUUID(), "other");
+
+        Set<UUID> claimed = storageService.claimReadyOperations(Instant.now(), LEASE_EXPIRED_BEFORE, 10, Set.of()).stream()
+                .map(Operation::getId)
+                .collect(Collectors.toSet());
+
+        assertEquals(Set.of(first.getId(), otherLane.getId()), claimed);
+        assertEquals(2, storageService.releaseClaims(claimed));
+        assertEquals(Set.of(second.getId()), storageService.findLaneBlockedOperationIds(Set.of(first.getId(), second.getId(), otherLane.getId())));
+    }
+
+    @Test
+    void operationOfFailedGroupDoesNotBlockLane() throws InterruptedException {
+        UUID entityId = UUID.randomUUID();
+        OperationState blocker = publish(entityId, "blocker");
+        OperationState next = publish(entityId, "next");
+        OperationGroup failedGroup = storageService.getGroup(blocker.getGroupId());
+        failedGroup.setStatus(OperationGroupStatus.FAILED);
+        storageService.update(failedGroup);
+
+        assertEquals(Set.of(), storageService.findLaneBlockedOperationIds(Set.of(next.getId())));
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(List.of(entityId + ":next"), testExecutor.getPublished().stream()
+                .filter(change -> change.startsWith(entityId.toString()))
+                .toList());
+        assertEquals(OperationStatus.CREATED, storageService.getOperation(blocker.getId()).getStatus());
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(next.getId()).getStatus());
+    }
+
+    @Test
+    void executeLaneInCreationOrderAcrossGroups() throws InterruptedException {
+        UUID entityId = UUID.randomUUID();
+        OperationState first = publish(entityId, "1");
+        OperationState second = publish(entityId, "2");
+        OperationState third = publish(entityId, "3");
+
+        for (int i = 0; i < 3; i++) {
+            kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+        }
+
+        assertEquals(List.of(entityId + ":1", entityId + ":2", entityId + ":3"), testExecutor.getPublished().stream()
+                .filter(change -> change.startsWith(entityId.toString()))
+                .toList());
+        assertTrue(List.of(first, second, third).stream()
+                .allMatch(operation -> storageService.getOperation(operation.getId()).getStatus() == OperationStatus.SUCCESS));
+    }
+
+    private OperationState publish(UUID entityId, String change) throws InterruptedException {
+        Thread.sleep(5);
+        return transactionTemplate.execute(status -> kapellmeister.use(testExecutor)
+                .params(entityId + ":" + change)
+                .relatedEntityId(entityId)
+                .addToQueue());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Getter
+        private final List<String> published = new CopyOnWriteArrayList<>();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.PUBLISH_DIFF_LOG;
+        }
+
+        @Override
+        public String getName() {
+            return "test-diff-log";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            published.add(param);
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
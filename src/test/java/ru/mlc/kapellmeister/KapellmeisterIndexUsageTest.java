@@ -0,0 +1,125 @@
+package ru.mlc.kapellmeister;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.db.repository.OperationGroupJdbcRepository;
+import ru.mlc.kapellmeister.db.repository.OperationJdbcRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что запросы репозиториев шедуллера выполняются по индексам из миграций стартера.
+ * Таблицы заполняются так, чтобы планировщик PostgreSQL выбирал индекс по статистике, без отключения последовательного сканирования
+ */
+@KapellmeisterIntegrationTest(KapellmeisterIndexUsageTest.TestConfig.class)
+class KapellmeisterIndexUsageTest {
+
+    private static final int GROUP_COUNT = 2000;
+    private static final int OPERATIONS_PER_GROUP = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    @Autowired
+    private OperationJdbcRepository operationRepository;
+    @Autowired
+    private OperationGroupJdbcRepository operationGroupRepository;
+
+    @BeforeEach
+    void fillTables() {
+        // каждая сотая группа не завершена, у каждой операции своя сущность, операции группы связаны в цепочку
+        jdbcTemplate.update("insert into kapellmeister_operation_group (id, status, create_timestamp, update_timestamp) " +
+                            "select md5('g' || i)::uuid, case when i % 100 = 0 then 'IN_PROGRESS' else 'COMPLETED' end, " +
+                            "now() - interval '1 day', now() - interval '1 day' + i * interval '1 second' " +
+                            "from generate_series(1, ?) i", GROUP_COUNT);
+        jdbcTemplate.update("insert into kapellmeister_operation (id, group_id, executor_name, type, related_entity_id, rollback_type, " +
+                            "importance_type, priority, attempt_count, max_attempt_count, retry_delay, create_timestamp, update_timestamp, status, version) " +
+                            "select md5('o' || i)::uuid, md5('g' || (i % ? + 1))::uuid, 'executor', 'PUBLISH_DIFF_LOG', md5('e' || i)::uuid, 'UNSUPPORTED', " +
+                            "'REQUIRED', 0, 1, 1, 0, now() - interval '1 day' + i * interval '1 millisecond', now() - interval '1 day', 'SUCCESS', 1 " +
+                            "from generate_series(1, ?) i", GROUP_COUNT, GROUP_COUNT * OPERATIONS_PER_GROUP);
+        jdbcTemplate.update("insert into kapellmeister_operation_order_binding (operation_id, previous_operation_id) " +
+                            "select md5('o' || (i + ?))::uuid, md5('o' || i)::uuid " +
+                            "from generate_series(1, ?) i", GROUP_COUNT, GROUP_COUNT * (OPERATIONS_PER_GROUP - 1));
+        jdbcTemplate.execute("analyze kapellmeister_operation_group");
+        jdbcTemplate.execute("analyze kapellmeister_operation");
+        jdbcTemplate.execute("analyze kapellmeister_operation_order_binding");
+    }
+
+    @Test
+    void findAvailableGroupsByUncompletedIndex() {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("status", OperationGroupStatus.AVAILABLE_FOR_PROCESS.stream().map(Enum::name).toList())
+                .addValue("create_timestamp", Timestamp.from(Instant.now()));
+
+        assertIndexUsed("kapellmeister_operation_group_uncompleted_index",
+                explain(sql(operationGroupRepository, "findByStatusesCreatedBeforeSql"), parameters));
+    }
+
+    @Test
+    void findPreviousOperationsOfGroupByGroupIndex() {
+        List<String> plan = jdbcTemplate.queryForList("explain " + sql(operationRepository, "findPreviousByGroupIdSql"), String.class,
+                uuid("g1"));
+
+        assertIndexUsed("kapellmeister_operation_group_id_status_index", plan);
+    }
+
+    @Test
+    void findNextOperationsByBindingIndex() {
+        List<String> plan = jdbcTemplate.queryForList("explain " + sql(operationRepository, "findNextSql"), String.class,
+                uuid("o1"));
+
+        assertIndexUsed("kapellmeister_operation_order_binding_previous_operation_id", plan);
+    }
+
+    @Test
+    void findLaneBlockedOperationsByRelatedEntityIndex() {
+        SqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", List.of(uuid("o1")))
+                .addValue("laneBlockingStatuses", ReflectionTestUtils.getField(OperationJdbcRepository.class, "LANE_BLOCKING_STATUSES"))
+                .addValue("laneBlockingGroupStatuses", ReflectionTestUtils.getField(OperationJdbcRepository.class, "LANE_BLOCKING_GROUP_STATUSES"));
+
+        assertIndexUsed("kapellmeister_operation_related_entity_index",
+                explain(sql(operationRepository, "findLaneBlockedSql"), parameters));
+    }
+
+    /**
+     * Текст запроса, который репозиторий формирует при создании и выполняет
+     */
+    private static String sql(Object repository, String field) {
+        return (String) ReflectionTestUtils.getField(repository, field);
+    }
+
+    private List<String> explain(String sql, SqlParameterSource parameters) {
+        return namedJdbcTemplate.queryForList("explain " + sql, parameters, String.class);
+    }
+
+    private static UUID uuid(String seed) {
+        return UUID.fromString(DigestUtils.md5DigestAsHex(seed.getBytes(StandardCharsets.UTF_8))
+                .replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5"));
+    }
+
+    private static void assertIndexUsed(String indexName, List<String> plan) {
+        assertTrue(String.join("\n", plan).contains(indexName), () -> String.join("\n", plan));
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+    }
+}
@@ -0,0 +1,127 @@
+package ru.mlc.kapellmeister;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics.EXECUTOR_CALL;
+import static ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics.OPERATION_LATENCY;
+import static ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics.POOL_ACTIVE;
+import static ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics.POOL_QUEUED;
+import static ru.mlc.kapellmeister.metrics.MicrometerKapellmeisterMetrics.STATUS_TRANSITIONS;
+
+@KapellmeisterIntegrationTest(KapellmeisterMetricsTest.TestConfig.class)
+@TestPropertySource(properties = "kapellmeister.metrics-enabled=true")
+class KapellmeisterMetricsTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+
+    @Test
+    void recordOperationLifecycle() {
+        transactionTemplate.executeWithoutResult(status -> kapellmeister.use(testExecutor).params("1").addToQueue());
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+
+        assertEquals(1, meterRegistry.get(EXECUTOR_CALL).tags("executor", testExecutor.getName(), "call", "EXECUTE").timer().count());
+        assertEquals(1, meterRegistry.get(STATUS_TRANSITIONS).tags("executor", testExecutor.getName(), "from", "CREATED", "to", "IN_WORK").counter().count());
+        assertEquals(1, meterRegistry.get(STATUS_TRANSITIONS).tags("executor", testExecutor.getName(), "from", "IN_WORK", "to", "SUCCESS").counter().count());
+        assertEquals(1, meterRegistry.get(OPERATION_LATENCY).tags("executor", testExecutor.getName()).timer().count());
+        assertNotNull(meterRegistry.get(POOL_QUEUED).gauge());
+        assertNotNull(meterRegistry.get(POOL_ACTIVE).gauge());
+    }
+
+    @Test
+    void recordTransitionOnlyAfterCommit() {
+        UUID operationId = transactionTemplate.execute(status -> kapellmeister.use(testExecutor).params("1").addToQueue().getId());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Operation operation = storageService.getOperation(operationId);
+            operation.setStatus(OperationStatus.SKIPPED);
+            storageService.update(operation);
+            status.setRollbackOnly();
+        });
+
+        assertNull(meterRegistry.find(STATUS_TRANSITIONS).tags("executor", testExecutor.getName(), "from", "CREATED", "to", "SKIPPED").counter());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Operation operation = storageService.getOperation(operationId);
+            operation.setStatus(OperationStatus.SKIPPED);
+            storageService.update(operation);
+        });
+
+        assertEquals(1, meterRegistry.get(STATUS_TRANSITIONS).tags("executor", testExecutor.getName(), "from", "CREATED", "to", "SKIPPED").counter().count());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-metrics";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
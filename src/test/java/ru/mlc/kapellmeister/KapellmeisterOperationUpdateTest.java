@@ -0,0 +1,119 @@
+package ru.mlc.kapellmeister;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.api.OperationState;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.Operation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@KapellmeisterIntegrationTest(KapellmeisterOperationUpdateTest.TestConfig.class)
+class KapellmeisterOperationUpdateTest {
+
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void updateOnlyChangedColumns() {
+        Operation operation = storageService.getOperation(addToQueue().getId());
+        jdbcTemplate.update("UPDATE kapellmeister_operation SET params = 'external' WHERE id = ?", operation.getId());
+
+        operation.setStatus(OperationStatus.CAN_RETRY);
+        operation.setAttemptCount(1);
+        assertTrue(storageService.update(operation));
+
+        Operation actual = storageService.getOperation(operation.getId());
+        assertEquals("external", actual.getParams());
+        assertEquals(OperationStatus.CAN_RETRY, actual.getStatus());
+        assertEquals(1, actual.getAttemptCount());
+        assertEquals(actual.getVersion(), operation.getVersion());
+    }
+
+    @Test
+    void updateStatusWithVersionCheck() {
+        Operation operation = storageService.getOperation(addToQueue().getId());
+        Operation concurrent = storageService.getOperation(operation.getId());
+
+        operation.setStatus(OperationStatus.IN_WORK);
+        assertTrue(storageService.updateStatus(operation));
+        concurrent.setStatus(OperationStatus.IN_WORK);
+        assertFalse(storageService.updateStatus(concurrent));
+
+        Operation actual = storageService.getOperation(operation.getId());
+        assertEquals(OperationStatus.IN_WORK, actual.getStatus());
+        assertEquals("1", actual.getParams());
+        assertEquals(concurrent.getVersion() + 1, actual.getVersion());
+    }
+
+    @Test
+    void trackChangesOnlyOfOperationsLoadedForUpdate() {
+        OperationState operationState = addToQueue();
+
+        Operation scanned = storageService.getGroup(operationState.getGroupId()).getOperations().get(0);
+        assertTrue(scanned.getPersistedColumnValues().isEmpty());
+        assertEquals(OperationStatus.CREATED, scanned.getPersistedStatus());
+        assertTrue(storageService.getOperation(operationState.getId()).getPersistedColumnValues().isPresent());
+    }
+
+    private OperationState addToQueue() {
+        return transactionTemplate.execute(status -> kapellmeister.use(testExecutor).params("1").addToQueue());
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-update";
+        }
+
+        @Override
+        public OperationExecutionResult execute(String param) {
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
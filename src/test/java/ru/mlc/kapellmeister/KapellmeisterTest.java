@@ -131,6 +131,26 @@ class KapellmeisterTest {
         );
     }
 
+    @Test
+    void saveDescriptionOfCurrentGroupBeforeCommit() {
+        UUID groupId = runOnTransaction(() -> {
+                    OperationState id1 = kapellmeister.use(testExecutor)
+                            .params("1")
+                            .addToQueue();
+                    kapellmeister.addDescription("description");
+                    OperationState id2 = kapellmeister.use(testExecutor)
+                            .params("2")
+                            .addToQueue();
+                    assertEquals(id1.getGroupId(), id2.getGroupId());
+                    return id1.getGroupId();
+                }
+        );
+
+        OperationGroup group = storageService.getGroup(groupId);
+        assertTrue(group.getDescription().endsWith("description"));
+        assertEquals(2, group.getOperations().size());
+    }
+
     @Test
     void syncOperationPositive() {
         OperationState id = runOnTransaction(() ->
@@ -252,6 +272,33 @@ class KapellmeisterTest {
     }
 
 
+    @Test
+    void requiredOperationWaitsPrevious() {
+        List<OperationState> id = runOnTransaction(() -> {
+                    OperationState id1 = kapellmeister.use(testExecutor)
+                            .params("1")
+                            .importanceType(OperationImportanceType.REQUIRED)
+                            .priority(OperationPriority.MIN)
+                            .addToQueue();
+                    OperationState id2 = kapellmeister.use(testExecutor)
+                            .params("2")
+                            .importanceType(OperationImportanceType.REQUIRED)
+                            .priority(OperationPriority.MAX)
+                            .after(id1.getId())
+                            .addToQueue();
+                    return List.of(id1, id2);
+                }
+        );
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(jobDeadLine, 1);
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(id.get(0).getId()).getStatus());
+        assertEquals(OperationStatus.CREATED, storageService.getOperation(id.get(1).getId()).getStatus());
+
+        kapellmeisterEngine.executeAvailableOperationGroupsSync(jobDeadLine, 1);
+        assertEquals(OperationStatus.SUCCESS, storageService.getOperation(id.get(1).getId()).getStatus());
+        assertEquals(List.of("1", "2"), testExecutor.getOrder());
+    }
+
     @Test
     void failWhenAttemptsIsOther() {
         when(testExecutor.getExecutionResult("2")).thenReturn(OperationExecutionResult.FAIL);
@@ -0,0 +1,254 @@
+package ru.mlc.kapellmeister;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterOperationThreadPoolExecutor;
+import ru.mlc.kapellmeister.api.OperationBuilder;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationType;
+import ru.mlc.kapellmeister.db.query.QueryBuilder;
+import ru.mlc.kapellmeister.db.tables.OperationGroupTable;
+import ru.mlc.kapellmeister.load.LoadProfile;
+import ru.mlc.kapellmeister.load.LoadWorkload;
+import ru.mlc.kapellmeister.load.StatementCountingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагрузочный прогон одного узла: генерирует группы операций по {@link LoadProfile} и выполняет их
+ * через {@link KapellmeisterEngine#executeAvailableOperationGroups(Instant, Integer)}.
+ * По умолчанию не запускается, запуск:
+ * mvn test -Dtest=KapellmeisterThroughputTest -Dkapellmeister.load.enabled=true -Dkapellmeister.load.groups=1000
+ * Настройки капельмейстера (размер пула, claim и т.д.) задаются системными свойствами kapellmeister.*
+ */
+@Slf4j
+@KapellmeisterIntegrationTest(KapellmeisterThroughputTest.TestConfig.class)
+@EnabledIfSystemProperty(named = "kapellmeister.load.enabled", matches = "true")
+class KapellmeisterThroughputTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private KapellmeisterOperationThreadPoolExecutor threadPoolExecutor;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private OperationGroupTable operationGroupTable;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private LoadSyncExecutor syncExecutor;
+    @Autowired
+    private LoadAsyncExecutor asyncExecutor;
+    @Autowired
+    private LoadWorkloadHolder workloadHolder;
+
+    @Test
+    void throughput() {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        LoadWorkload workload = new LoadWorkload(profile);
+        workloadHolder.setWorkload(workload);
+        StatementCountingDataSource countingDataSource = (StatementCountingDataSource) dataSource;
+
+        long enqueueStatements = countingDataSource.getStatementCount();
+        Map<String, UUID> operationIds = enqueue(workload);
+        enqueueStatements = countingDataSource.getStatementCount() - enqueueStatements;
+
+        long executionStatements = 0;
+        long pollingNanos = 0;
+        long deadline = System.nanoTime() + profile.timeout().toNanos();
+        workload.start();
+        long start = System.nanoTime();
+        while (true) {
+            long statements = countingDataSource.getStatementCount();
+            kapellmeisterEngine.executeAvailableOperationGroups(Instant.now().plus(profile.timeout()), -1);
+            threadPoolExecutor.waitExecution();
+            for (LoadWorkload.PlannedOperation operation : workload.drainWaitingResponse()) {
+                kapellmeisterEngine.saveResult(operationIds.get(operation.key()), OperationExecutionResult.SUCCESS);
+                workload.complete(operation);
+            }
+            executionStatements += countingDataSource.getStatementCount() - statements;
+
+            long pollingStart = System.nanoTime();
+            boolean finished = countGroupsAvailableForProcess() == 0;
+            pollingNanos += System.nanoTime() - pollingStart;
+            if (finished || System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start - pollingNanos);
+
+        long operationsCount = workload.getFinishedCount();
+        log.info("""
+                        Нагрузочный прогон {}
+                        операций завершено: {} из {}, попыток: {}, время: {} мс
+                        операций в секунду: {}
+                        задержка диспетчеризации p50: {} мс, p99: {} мс
+                        запросов к БД на операцию: постановка {}, выполнение {}""",
+                profile,
+                operationsCount, workload.getOperationsCount(), workload.getAttemptsCount(), elapsed.toMillis(),
+                String.format("%.1f", operationsCount * 1_000_000_000.0 / Math.max(1, elapsed.toNanos())),
+                String.format("%.2f", workload.getDispatchLatency(0.5) / 1_000_000.0),
+                String.format("%.2f", workload.getDispatchLatency(0.99) / 1_000_000.0),
+                String.format("%.1f", (double) enqueueStatements / workload.getOperationsCount()),
+                String.format("%.1f", (double) executionStatements / Math.max(1, operationsCount)));
+
+        assertEquals(0, countGroupsAvailableForProcess(), "Не все группы завершены за " + profile.timeout());
+    }
+
+    private Map<String, UUID> enqueue(LoadWorkload workload) {
+        Map<String, UUID> operationIds = new HashMap<>();
+        for (List<LoadWorkload.PlannedOperation> group : workload.getGroups()) {
+            transactionTemplate.executeWithoutResult(status -> group.forEach(operation -> {
+                OperationBuilder<String> builder = kapellmeister.use(operation.async() ? asyncExecutor : syncExecutor)
+                        .params(operation.key())
+                        .retryDelay(0)
+                        .maxAttemptCount(3);
+                if (!operation.previous().isEmpty()) {
+                    builder.after(operation.previous().stream()
+                            .map(previous -> operationIds.get(previous.key()))
+                            .collect(Collectors.toSet()));
+                }
+                if (operation.outcome() == LoadWorkload.Outcome.FAIL) {
+                    builder.importanceType(OperationImportanceType.CRITICAL);
+                }
+                operationIds.put(operation.key(), builder.addToQueue().getId());
+            }));
+        }
+        return operationIds;
+    }
+
+    private int countGroupsAvailableForProcess() {
+        Integer count = namedParameterJdbcTemplate.queryForObject(new QueryBuilder()
+                        .select("count(*)")
+                        .from(operationGroupTable.getTableName())
+                        .where()
+                        .inNamed(operationGroupTable.getStatus(), operationGroupTable.getStatus().name())
+                        .getQuery(),
+                new MapSqlParameterSource(operationGroupTable.getStatus().name(), OperationGroupStatus.AVAILABLE_FOR_PROCESS.stream()
+                        .map(Enum::name)
+                        .collect(Collectors.toSet())),
+                Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return StatementCountingDataSource.postProcessor();
+        }
+
+        @Bean
+        public LoadWorkloadHolder loadWorkloadHolder() {
+            return new LoadWorkloadHolder();
+        }
+
+        @Bean
+        public LoadSyncExecutor loadSyncExecutor(LoadWorkloadHolder workloadHolder) {
+            return new LoadSyncExecutor(workloadHolder);
+        }
+
+        @Bean
+        public LoadAsyncExecutor loadAsyncExecutor(LoadWorkloadHolder workloadHolder) {
+            return new LoadAsyncExecutor(workloadHolder);
+        }
+    }
+
+    public static class LoadWorkloadHolder {
+
+        private volatile LoadWorkload workload;
+
+        public void setWorkload(LoadWorkload workload) {
+            this.workload = workload;
+        }
+
+        public LoadWorkload getWorkload() {
+            return workload;
+        }
+    }
+
+    @RequiredArgsConstructor
+    public abstract static class LoadExecutor implements OperationExecutor<String> {
+
+        private final LoadWorkloadHolder workloadHolder;
+
+        @Override
+        public OperationExecutionResult execute(String key) {
+            return workloadHolder.getWorkload().execute(key);
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+
+    public static class LoadSyncExecutor extends LoadExecutor {
+
+        public LoadSyncExecutor(LoadWorkloadHolder workloadHolder) {
+            super(workloadHolder);
+        }
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "load-sync";
+        }
+    }
+
+    public static class LoadAsyncExecutor extends LoadExecutor {
+
+        public LoadAsyncExecutor(LoadWorkloadHolder workloadHolder) {
+            super(workloadHolder);
+        }
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.ASYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "load-async";
+        }
+    }
+}
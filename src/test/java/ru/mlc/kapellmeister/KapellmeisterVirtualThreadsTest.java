@@ -0,0 +1,117 @@
+package ru.mlc.kapellmeister;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.Kapellmeister;
+import ru.mlc.kapellmeister.api.KapellmeisterEngine;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.api.OperationExecutor;
+import ru.mlc.kapellmeister.configuration.KapellmeisterIntegrationTest;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+import ru.mlc.kapellmeister.constants.OperationType;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mlc.kapellmeister.constants.OperationStatus.CREATED;
+import static ru.mlc.kapellmeister.constants.OperationStatus.SUCCESS;
+
+@EnabledForJreRange(min = JRE.JAVA_21)
+@KapellmeisterIntegrationTest(KapellmeisterVirtualThreadsTest.TestConfig.class)
+@TestPropertySource(properties = {
+        "kapellmeister.executor-mode=virtual",
+        "kapellmeister.virtual-threads-max-concurrency=5"
+})
+class KapellmeisterVirtualThreadsTest {
+
+    @Autowired
+    private KapellmeisterEngine kapellmeisterEngine;
+    @Autowired
+    private Kapellmeister kapellmeister;
+    @Autowired
+    private TestExecutor testExecutor;
+    @Autowired
+    private KapellmeisterStorageService storageService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void executeOnVirtualThreadsWithLimitedConcurrency() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 30; i++) {
+                kapellmeister.use(testExecutor).params(String.valueOf(i)).addToQueue();
+            }
+        });
+
+        while (storageService.findAll().stream().anyMatch(operation -> operation.getStatus() == CREATED)) {
+            kapellmeisterEngine.executeAvailableOperationGroupsSync(Instant.now().plusSeconds(100));
+        }
+
+        assertEquals(30, storageService.findAll().stream().filter(operation -> operation.getStatus() == SUCCESS).count());
+        assertTrue(testExecutor.getMaxInExecution() <= 5);
+        assertTrue(testExecutor.getVirtualThreadUsed().get() > 0);
+    }
+
+    @TestConfiguration
+    public static class TestConfig {
+
+        @Bean
+        public TestExecutor testExecutor() {
+            return new TestExecutor();
+        }
+    }
+
+    public static class TestExecutor implements OperationExecutor<String> {
+
+        private final AtomicInteger inExecution = new AtomicInteger();
+        private final AtomicInteger maxInExecution = new AtomicInteger();
+        @Getter
+        private final AtomicInteger virtualThreadUsed = new AtomicInteger();
+
+        @Override
+        public OperationType getOperationType() {
+            return OperationType.SYNC_REQUEST;
+        }
+
+        @Override
+        public String getName() {
+            return "test-virtual-threads";
+        }
+
+        @Override
+        @SneakyThrows
+        public OperationExecutionResult execute(String param) {
+            maxInExecution.accumulateAndGet(inExecution.incrementAndGet(), Math::max);
+            if ((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())) {
+                virtualThreadUsed.incrementAndGet();
+            }
+            Thread.sleep(50);
+            inExecution.decrementAndGet();
+            return OperationExecutionResult.SUCCESS;
+        }
+
+        public int getMaxInExecution() {
+            return maxInExecution.get();
+        }
+
+        @Override
+        public String deserializeParams(String params) {
+            return params;
+        }
+
+        @Override
+        public String serializeParams(String params) {
+            return params;
+        }
+    }
+}
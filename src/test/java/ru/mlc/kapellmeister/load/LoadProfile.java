@@ -0,0 +1,63 @@
+package ru.mlc.kapellmeister.load;
+
+import java.time.Duration;
+
+/**
+ * Параметры нагрузки, задаются системными свойствами с префиксом kapellmeister.load.
+ *
+ * @param groups        количество групп операций
+ * @param groupSize     количество операций в группе
+ * @param shape         форма графа зависимостей внутри группы
+ * @param layerWidth    ширина слоя для {@link Shape#LAYERED}
+ * @param failShare     доля операций, завершающихся ошибкой без ретрая (такие операции критичные, группа проваливается)
+ * @param retryShare    доля операций, первая попытка которых неуспешна
+ * @param asyncShare    доля асинхронных операций, результат которых сохраняется через saveResult
+ * @param timeout       максимальная длительность прогона
+ * @param seed          зерно генератора, одинаковое зерно дает одинаковую нагрузку
+ */
+public record LoadProfile(
+        int groups,
+        int groupSize,
+        Shape shape,
+        int layerWidth,
+        double failShare,
+        double retryShare,
+        double asyncShare,
+        Duration timeout,
+        long seed
+) {
+
+    private static final String PREFIX = "kapellmeister.load.";
+
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.parseInt(property("groups", "200")),
+                Integer.parseInt(property("group-size", "10")),
+                Shape.valueOf(property("shape", "LAYERED")),
+                Integer.parseInt(property("layer-width", "3")),
+                Double.parseDouble(property("fail-share", "0.01")),
+                Double.parseDouble(property("retry-share", "0.05")),
+                Double.parseDouble(property("async-share", "0.1")),
+                Duration.parse(property("timeout", "PT10M")),
+                Long.parseLong(property("seed", "1")));
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    public enum Shape {
+        /**
+         * Каждая операция зависит от предыдущей
+         */
+        CHAIN,
+        /**
+         * Операции независимы
+         */
+        WIDE,
+        /**
+         * Операции разбиты на слои, каждая операция зависит от двух операций предыдущего слоя
+         */
+        LAYERED
+    }
+}
@@ -0,0 +1,180 @@
+package ru.mlc.kapellmeister.load;
+
+import lombok.Getter;
+import ru.mlc.kapellmeister.constants.OperationExecutionResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сгенерированная по {@link LoadProfile} нагрузка и учет ее выполнения.
+ * Операция идентифицируется ключом "группа:операция", ключ передается экзекутору в параметрах.
+ * Задержка диспетчеризации - время от момента, когда операция стала готова к выполнению
+ * (завершилась последняя предшествующая операция, предыдущая попытка или начался прогон), до вызова экзекутора
+ */
+public class LoadWorkload {
+
+    @Getter
+    private final List<List<PlannedOperation>> groups = new ArrayList<>();
+    private final Map<String, PlannedOperation> operations = new ConcurrentHashMap<>();
+    private final Map<String, Long> readyNanos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+    private final Queue<Long> dispatchLatencies = new ConcurrentLinkedQueue<>();
+    private final Queue<PlannedOperation> waitingResponse = new ConcurrentLinkedQueue<>();
+    private final AtomicLong finishedCount = new AtomicLong();
+
+    public LoadWorkload(LoadProfile profile) {
+        Random random = new Random(profile.seed());
+        for (int groupIndex = 0; groupIndex < profile.groups(); groupIndex++) {
+            List<PlannedOperation> group = new ArrayList<>(profile.groupSize());
+            for (int index = 0; index < profile.groupSize(); index++) {
+                PlannedOperation operation = new PlannedOperation(groupIndex + ":" + index,
+                        outcome(random, profile),
+                        random.nextDouble() < profile.asyncShare(),
+                        previous(random, profile, group, index));
+                operation.previous().forEach(previous -> previous.next().add(operation));
+                group.add(operation);
+                operations.put(operation.key(), operation);
+            }
+            groups.add(group);
+        }
+    }
+
+    public int getOperationsCount() {
+        return operations.size();
+    }
+
+    /**
+     * Начало прогона: операции без предшествующих готовы к выполнению
+     */
+    public void start() {
+        long now = System.nanoTime();
+        operations.values().stream()
+                .filter(operation -> operation.previous().isEmpty())
+                .forEach(operation -> readyNanos.put(operation.key(), now));
+    }
+
+    public OperationExecutionResult execute(String key) {
+        long now = System.nanoTime();
+        PlannedOperation operation = operations.get(key);
+        Long ready = readyNanos.get(key);
+        if (ready != null) {
+            dispatchLatencies.add(now - ready);
+        }
+        int attempt = attempts.merge(key, 1, Integer::sum);
+        if (operation.outcome() == Outcome.RETRY && attempt == 1) {
+            readyNanos.put(key, System.nanoTime());
+            return OperationExecutionResult.ATTEMPT_FAILED;
+        }
+        if (operation.outcome() == Outcome.FAIL) {
+            finishedCount.incrementAndGet();
+            return OperationExecutionResult.FAIL;
+        }
+        if (operation.async()) {
+            waitingResponse.add(operation);
+        } else {
+            complete(operation);
+        }
+        return OperationExecutionResult.SUCCESS;
+    }
+
+    /**
+     * @return асинхронные операции, ожидающие сохранения результата
+     */
+    public List<PlannedOperation> drainWaitingResponse() {
+        List<PlannedOperation> drained = new ArrayList<>();
+        PlannedOperation operation;
+        while ((operation = waitingResponse.poll()) != null) {
+            drained.add(operation);
+        }
+        return drained;
+    }
+
+    public void complete(PlannedOperation operation) {
+        finishedCount.incrementAndGet();
+        long now = System.nanoTime();
+        operation.next().forEach(next -> readyNanos.merge(next.key(), now, Math::max));
+    }
+
+    public long getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    public long getAttemptsCount() {
+        return attempts.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    /**
+     * @param quantile квантиль от 0 до 1
+     * @return задержка диспетчеризации в наносекундах
+     */
+    public long getDispatchLatency(double quantile) {
+        long[] latencies = dispatchLatencies.stream().mapToLong(Long::longValue).toArray();
+        if (latencies.length == 0) {
+            return 0;
+        }
+        Arrays.sort(latencies);
+        int index = (int) Math.ceil(quantile * latencies.length) - 1;
+        return latencies[Math.max(0, index)];
+    }
+
+    private static Outcome outcome(Random random, LoadProfile profile) {
+        double value = random.nextDouble();
+        if (value < profile.failShare()) {
+            return Outcome.FAIL;
+        }
+        return value < profile.failShare() + profile.retryShare() ? Outcome.RETRY : Outcome.SUCCESS;
+    }
+
+    private static Set<PlannedOperation> previous(Random random, LoadProfile profile, List<PlannedOperation> group, int index) {
+        Set<PlannedOperation> previous = new LinkedHashSet<>();
+        if (profile.shape() == LoadProfile.Shape.CHAIN && index > 0) {
+            previous.add(group.get(index - 1));
+        } else if (profile.shape() == LoadProfile.Shape.LAYERED && index >= profile.layerWidth()) {
+            int previousLayerStart = (index / profile.layerWidth() - 1) * profile.layerWidth();
+            previous.add(group.get(previousLayerStart + random.nextInt(profile.layerWidth())));
+            previous.add(group.get(previousLayerStart + random.nextInt(profile.layerWidth())));
+        }
+        return previous;
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        /**
+         * Первая попытка завершается ATTEMPT_FAILED
+         */
+        RETRY,
+        FAIL
+    }
+
+    public record PlannedOperation(String key, Outcome outcome, boolean async, Set<PlannedOperation> previous, List<PlannedOperation> next) {
+
+        PlannedOperation(String key, Outcome outcome, boolean async, Set<PlannedOperation> previous) {
+            this(key, outcome, async, previous, new ArrayList<>());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PlannedOperation operation && key.equals(operation.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+}
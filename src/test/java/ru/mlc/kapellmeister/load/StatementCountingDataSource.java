@@ -0,0 +1,93 @@
+package ru.mlc.kapellmeister.load;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DataSource, считающий обращения к БД: каждый вызов execute* у Statement (в том числе executeBatch) - один round trip
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORY_METHODS = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    private final AtomicLong statementCount = new AtomicLong();
+
+    public StatementCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Оборачивает DataSource контекста, чтобы учитывались запросы всех компонентов капельмейстера
+     */
+    public static BeanPostProcessor postProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)
+                        ? new StatementCountingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return STATEMENT_FACTORY_METHODS.contains(method.getName())
+                    ? countingStatement(method.getReturnType(), (Statement) result)
+                    : result;
+        });
+    }
+
+    private Object countingStatement(Class<?> statementType, Statement statement) {
+        return proxy(statementType, statement, (target, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                statementCount.incrementAndGet();
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, TargetInvocationHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+        return type.cast(Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TargetInvocationHandler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
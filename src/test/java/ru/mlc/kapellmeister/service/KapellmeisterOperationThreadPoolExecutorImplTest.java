@@ -0,0 +1,118 @@
+package ru.mlc.kapellmeister.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mlc.kapellmeister.api.KapellmeisterOperationProcessor;
+import ru.mlc.kapellmeister.api.KapellmeisterStorageService;
+import ru.mlc.kapellmeister.db.Operation;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class KapellmeisterOperationThreadPoolExecutorImplTest {
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+    @Mock
+    KapellmeisterStorageService storageService;
+    @Mock
+    KapellmeisterOperationProcessor operationProcessor;
+
+    @Test
+    void rejectSubmitWhenPoolIsFull() {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1));
+        KapellmeisterOperationThreadPoolExecutorImpl pool = new KapellmeisterOperationThreadPoolExecutorImpl(
+                threadPoolExecutor, transactionTemplate, storageService, operationProcessor, Map.of());
+        CountDownLatch latch = blockProcessing();
+        List<Operation> operations = List.of(operation("fast"), operation("fast"), operation("fast"));
+
+        assertEquals(2, pool.getAvailableCapacity());
+        assertTrue(pool.submitClaimedOperation(operations.get(0)));
+        assertTrue(pool.submitClaimedOperation(operations.get(1)));
+        assertEquals(0, pool.getAvailableCapacity());
+        assertFalse(pool.submitClaimedOperation(operations.get(2)));
+        verify(storageService).releaseClaims(List.of(operations.get(2).getId()));
+
+        latch.countDown();
+        assertTrue(pool.waitExecution(Duration.ofSeconds(10)));
+        assertEquals(2, pool.getAvailableCapacity());
+        threadPoolExecutor.shutdown();
+    }
+
+    @Test
+    void rejectSubmitWhenExecutorLimitIsReached() {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(2));
+        KapellmeisterOperationThreadPoolExecutorImpl pool = new KapellmeisterOperationThreadPoolExecutorImpl(
+                threadPoolExecutor, transactionTemplate, storageService, operationProcessor, Map.of("slow", 1));
+        CountDownLatch latch = blockProcessing();
+        Operation slow = operation("slow");
+        Operation otherSlow = operation("slow");
+
+        assertTrue(pool.submitClaimedOperation(slow));
+        assertEquals(Set.of("slow"), pool.getSaturatedExecutorNames());
+        assertFalse(pool.submitClaimedOperation(otherSlow));
+        verify(storageService).releaseClaims(List.of(otherSlow.getId()));
+        assertTrue(pool.submitClaimedOperation(operation("fast")));
+        assertEquals(2, pool.getAvailableCapacity());
+
+        latch.countDown();
+        assertTrue(pool.waitExecution(Duration.ofSeconds(10)));
+        assertTrue(pool.getSaturatedExecutorNames().isEmpty());
+        threadPoolExecutor.shutdown();
+    }
+
+    @Test
+    void retrySubmitOnceWhenPoolRejectsTaskWithFreeCapacity() {
+        AtomicInteger executeCount = new AtomicInteger();
+        KapellmeisterOperationThreadPoolExecutorImpl pool = new KapellmeisterOperationThreadPoolExecutorImpl(
+                task -> {
+                    // поток пула освободил место, но еще не вернулся к очереди
+                    if (executeCount.incrementAndGet() == 1) {
+                        throw new RejectedExecutionException();
+                    }
+                    task.run();
+                }, 1, transactionTemplate, storageService, operationProcessor, Map.of());
+        Operation operation = operation("fast");
+
+        assertTrue(pool.submitClaimedOperation(operation));
+        assertEquals(2, executeCount.get());
+        verify(operationProcessor).processOperation(operation.getId());
+        assertEquals(1, pool.getAvailableCapacity());
+    }
+
+    private CountDownLatch blockProcessing() {
+        CountDownLatch latch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            latch.await();
+            return null;
+        }).when(operationProcessor).processOperation(any(UUID.class));
+        return latch;
+    }
+
+    private Operation operation(String executorName) {
+        return Operation.builder()
+                .id(UUID.randomUUID())
+                .executorName(executorName)
+                .build();
+    }
+}
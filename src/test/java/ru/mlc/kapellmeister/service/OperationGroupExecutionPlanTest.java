@@ -0,0 +1,131 @@
+package ru.mlc.kapellmeister.service;
+
+import org.junit.jupiter.api.Test;
+import ru.mlc.kapellmeister.constants.OperationGroupStatus;
+import ru.mlc.kapellmeister.constants.OperationImportanceType;
+import ru.mlc.kapellmeister.constants.OperationStatus;
+import ru.mlc.kapellmeister.db.Operation;
+import ru.mlc.kapellmeister.db.OperationGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationGroupExecutionPlanTest {
+
+    @Test
+    void pollByPriorityAfterPreviousCompleted() {
+        Operation first = operation(5, OperationImportanceType.CRITICAL, OperationStatus.CREATED);
+        Operation second = operation(1, OperationImportanceType.CRITICAL, OperationStatus.CREATED).addPrevious(first);
+        Operation independent = operation(3, OperationImportanceType.CRITICAL, OperationStatus.CREATED);
+        OperationGroupExecutionPlan plan = new OperationGroupExecutionPlan(group(OperationGroupStatus.IN_PROGRESS, first, second, independent));
+
+        assertEquals(Optional.of(independent), plan.poll(plan::allPreviousOperationsCompleted));
+        assertEquals(Optional.of(first), plan.poll(plan::allPreviousOperationsCompleted));
+        assertEquals(Optional.empty(), plan.poll(plan::allPreviousOperationsCompleted));
+
+        assertTrue(plan.update(List.of(copy(first, OperationStatus.SUCCESS))));
+        assertEquals(Optional.of(second), plan.poll(plan::allPreviousOperationsCompleted));
+    }
+
+    @Test
+    void pollNotCriticalAfterCriticalCompleted() {
+        Operation critical = operation(5, OperationImportanceType.CRITICAL, OperationStatus.CREATED);
+        Operation required = operation(1, OperationImportanceType.REQUIRED, OperationStatus.CREATED);
+        OperationGroupExecutionPlan plan = new OperationGroupExecutionPlan(group(OperationGroupStatus.IN_PROGRESS, critical, required));
+
+        assertEquals(Optional.of(critical), plan.poll(plan::allPreviousOperationsCompleted));
+        assertEquals(Optional.empty(), plan.poll(plan::allPreviousOperationsCompleted));
+
+        assertTrue(plan.update(List.of(copy(critical, OperationStatus.SUCCESS))));
+        assertEquals(Optional.of(required), plan.poll(plan::allPreviousOperationsCompleted));
+    }
+
+    @Test
+    void pollRejectedCandidateAgain() {
+        Operation delayed = operation(1, OperationImportanceType.CRITICAL, OperationStatus.CAN_RETRY);
+        Operation ready = operation(5, OperationImportanceType.CRITICAL, OperationStatus.CREATED);
+        OperationGroupExecutionPlan plan = new OperationGroupExecutionPlan(group(OperationGroupStatus.IN_PROGRESS, delayed, ready));
+
+        assertEquals(Optional.of(ready), plan.poll(operation -> operation.getStatus() == OperationStatus.CREATED));
+        assertEquals(Optional.empty(), plan.poll(operation -> operation.getStatus() == OperationStatus.CREATED));
+        assertEquals(Optional.empty(), plan.poll(plan::allPreviousOperationsCompleted));
+
+        assertTrue(plan.update(List.of()));
+        assertEquals(Optional.of(delayed), plan.poll(plan::allPreviousOperationsCompleted));
+        assertEquals(Optional.empty(), plan.poll(plan::allPreviousOperationsCompleted));
+
+        plan.requeue(delayed);
+        assertEquals(Optional.of(delayed), plan.poll(plan::allPreviousOperationsCompleted));
+    }
+
+    @Test
+    void checkCompletedAndRejectedCandidatesOnce() {
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            operations.add(operation(1, OperationImportanceType.REQUIRED, OperationStatus.SUCCESS));
+            operations.add(operation(2, OperationImportanceType.REQUIRED, OperationStatus.CAN_RETRY));
+            operations.add(operation(3, OperationImportanceType.REQUIRED, OperationStatus.CREATED));
+        }
+        OperationGroupExecutionPlan plan = new OperationGroupExecutionPlan(group(OperationGroupStatus.IN_PROGRESS, operations.toArray(Operation[]::new)));
+        AtomicInteger filterCalls = new AtomicInteger();
+        Predicate<Operation> readyFilter = operation -> {
+            filterCalls.incrementAndGet();
+            return operation.getStatus() == OperationStatus.CREATED;
+        };
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(OperationStatus.CREATED, plan.poll(readyFilter).map(Operation::getStatus).orElse(null));
+        }
+        assertEquals(Optional.empty(), plan.poll(readyFilter));
+
+        assertEquals(20, filterCalls.get());
+    }
+
+    @Test
+    void pollRollbackInReverseOrder() {
+        Operation first = operation(1, OperationImportanceType.CRITICAL, OperationStatus.SUCCESS);
+        Operation second = operation(1, OperationImportanceType.CRITICAL, OperationStatus.SUCCESS).addPrevious(first);
+        OperationGroupExecutionPlan plan = new OperationGroupExecutionPlan(group(OperationGroupStatus.ROLLBACK_IN_PROGRESS, first, second));
+
+        assertEquals(Optional.of(second), plan.poll(plan::allNextOperationsRolledBack));
+        assertEquals(Optional.empty(), plan.poll(plan::allNextOperationsRolledBack));
+
+        assertTrue(plan.update(List.of(copy(second, OperationStatus.ROLLBACK_SUCCESS))));
+        assertEquals(Optional.of(first), plan.poll(plan::allNextOperationsRolledBack));
+    }
+
+    private static OperationGroup group(OperationGroupStatus status, Operation... operations) {
+        return OperationGroup.builder()
+                .id(UUID.randomUUID())
+                .status(status)
+                .operations(List.of(operations))
+                .build();
+    }
+
+    private static Operation operation(int priority, OperationImportanceType importanceType, OperationStatus status) {
+        return Operation.builder()
+                .id(UUID.randomUUID())
+                .priority(priority)
+                .importanceType(importanceType)
+                .status(status)
+                .attemptCount(0)
+                .build();
+    }
+
+    private static Operation copy(Operation operation, OperationStatus status) {
+        return Operation.builder()
+                .id(operation.getId())
+                .priority(operation.getPriority())
+                .importanceType(operation.getImportanceType())
+                .status(status)
+                .attemptCount(operation.getAttemptCount())
+                .build();
+    }
+}
@@ -1,6 +1,5 @@
 package ru.mlc.kapellmeister.service;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -13,13 +12,13 @@ import ru.mlc.kapellmeister.db.OperationGroup;
 import ru.mlc.kapellmeister.exceptions.OperationConfigValidationException;
 import ru.mlc.kapellmeister.exceptions.OperationCycleOrderValidationException;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doReturn;
 
 @ExtendWith(MockitoExtension.class)
 class OperationValidatorTest {
@@ -30,11 +29,6 @@ class OperationValidatorTest {
     @InjectMocks
     OperationValidator validator;
 
-    @BeforeEach
-    void setUp() {
-        doReturn(null).when(storageService).setPreviousOperation(any());
-    }
-
     private final OperationGroup transaction = OperationGroup.builder()
             .id(UUID.randomUUID())
             .build();
@@ -88,6 +82,37 @@ class OperationValidatorTest {
         validator.validateCycleBinding(transaction);
     }
 
+    @Test
+    void successForNewOperationAfterValidated() {
+        Set<UUID> validated = new HashSet<>();
+        validator.validateNewOperation(operation1, validated);
+        validator.validateNewOperation(operation2, validated);
+        validator.validateNewOperation(operation3, validated);
+
+        assertEquals(Set.of(operation1.getId(), operation2.getId(), operation3.getId()), validated);
+    }
+
+    @Test
+    void throwIfNewOperationCreatesCycle() {
+        operation1.addPrevious(operation3);
+        assertThrows(OperationCycleOrderValidationException.class, () -> validator.validateNewOperation(operation3, new HashSet<>()));
+    }
+
+    @Test
+    void throwIfNewCriticalOperationAfterNotCritical() {
+        Operation required = Operation.builder()
+                .id(UUID.randomUUID())
+                .importanceType(OperationImportanceType.REQUIRED)
+                .build();
+        Operation critical = Operation.builder()
+                .id(UUID.randomUUID())
+                .importanceType(OperationImportanceType.CRITICAL)
+                .build()
+                .addPrevious(required);
+
+        assertThrows(OperationConfigValidationException.class, () -> validator.validateNewOperation(critical, new HashSet<>()));
+    }
+
     @Test
     void throwThenForCriticalExistsNotCriticalOperation() {
         Operation o1 = Operation.builder()
@@ -0,0 +1,71 @@
+package ru.mlc.kapellmeister.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrioritizedOperationTaskTest {
+
+    @Test
+    void urgentTaskOvertakesBackgroundTask() {
+        PriorityBlockingQueue<PrioritizedOperationTask> queue = new PriorityBlockingQueue<>(2, PrioritizedOperationTask.comparator(Duration.ofMinutes(1)));
+        PrioritizedOperationTask background = new PrioritizedOperationTask(10, () -> {
+        });
+        PrioritizedOperationTask urgent = new PrioritizedOperationTask(0, () -> {
+        });
+
+        queue.add(background);
+        queue.add(urgent);
+
+        assertSame(urgent, queue.poll());
+        assertSame(background, queue.poll());
+    }
+
+    @Test
+    void sameTasksAreTakenInSubmissionOrder() {
+        PriorityBlockingQueue<PrioritizedOperationTask> queue = new PriorityBlockingQueue<>(2, PrioritizedOperationTask.comparator(Duration.ofMinutes(1)));
+        PrioritizedOperationTask first = new PrioritizedOperationTask(5, () -> {
+        });
+        PrioritizedOperationTask second = new PrioritizedOperationTask(5, () -> {
+        });
+
+        queue.add(second);
+        queue.add(first);
+
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+    }
+
+    @Test
+    void waitingTaskIsNotStarved() throws InterruptedException {
+        PriorityBlockingQueue<PrioritizedOperationTask> queue = new PriorityBlockingQueue<>(2, PrioritizedOperationTask.comparator(Duration.ofMillis(1)));
+        PrioritizedOperationTask background = new PrioritizedOperationTask(10, () -> {
+        });
+        Thread.sleep(50);
+        PrioritizedOperationTask urgent = new PrioritizedOperationTask(0, () -> {
+        });
+
+        queue.add(urgent);
+        queue.add(background);
+
+        assertSame(background, queue.poll());
+    }
+
+    @Test
+    void foreignTaskIsTakenAfterOperationTasks() {
+        PriorityBlockingQueue<Runnable> queue = PrioritizedOperationTask.queue(2, Duration.ofMinutes(1));
+        Runnable foreign = () -> {
+        };
+        PrioritizedOperationTask background = new PrioritizedOperationTask(10, () -> {
+        });
+
+        queue.add(foreign);
+        queue.add(background);
+
+        assertSame(background, queue.poll());
+        assertSame(foreign, queue.poll());
+    }
+}